@@ -0,0 +1,226 @@
+package org.terifan.ocr;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+
+/**
+ * Decodes, segments and scans a sequence of pages over a fixed number of worker threads using a shared OCRModel.
+ * Sources are read ahead only while fewer than the max in-flight pages are being processed or waiting to be consumed,
+ * keeping memory use independent of the length of the batch. Results are delivered in input order on the calling thread.
+ */
+public class BatchProcessor
+{
+	private final OCRModel mModel;
+	private int mThreadCount;
+	private int mMaxInFlight;
+	private Resolver mResolver;
+	private Function<Page, Settings> mSettingsProvider;
+	private Consumer<Bitmap> mPreprocessor;
+
+
+	public BatchProcessor(OCRModel aModel)
+	{
+		mModel = aModel;
+		mThreadCount = Runtime.getRuntime().availableProcessors();
+		mMaxInFlight = 2 * mThreadCount;
+		mResolver = new SimpleResolver();
+		mSettingsProvider = aPage -> new Settings();
+	}
+
+
+	public OCRModel getModel()
+	{
+		return mModel;
+	}
+
+
+	public int getThreadCount()
+	{
+		return mThreadCount;
+	}
+
+
+	/**
+	 * Sets the number of worker threads. Default is the number of available processors.
+	 */
+	public void setThreadCount(int aThreadCount)
+	{
+		if (aThreadCount < 1)
+		{
+			throw new IllegalArgumentException("Thread count must be at least one: " + aThreadCount);
+		}
+
+		mThreadCount = aThreadCount;
+	}
+
+
+	public int getMaxInFlight()
+	{
+		return mMaxInFlight;
+	}
+
+
+	/**
+	 * Sets the maximum number of pages decoded but not yet consumed. Default is twice the number of available processors.
+	 */
+	public void setMaxInFlight(int aMaxInFlight)
+	{
+		if (aMaxInFlight < 1)
+		{
+			throw new IllegalArgumentException("Max in-flight must be at least one: " + aMaxInFlight);
+		}
+
+		mMaxInFlight = aMaxInFlight;
+	}
+
+
+	public Resolver getResolver()
+	{
+		return mResolver;
+	}
+
+
+	/**
+	 * Sets the Resolver used to scan all pages, it's called concurrently and must be thread-safe. Default is a
+	 * SimpleResolver accepting all words.
+	 */
+	public void setResolver(Resolver aResolver)
+	{
+		mResolver = aResolver;
+	}
+
+
+	/**
+	 * Sets the function returning the Settings used to segment a page. Default returns new Settings for each page.
+	 */
+	public void setSettingsProvider(Function<Page, Settings> aSettingsProvider)
+	{
+		mSettingsProvider = aSettingsProvider;
+	}
+
+
+	/**
+	 * Sets an operation applied to each Bitmap before segmentation, e.g. Bitmap::adjustPageRotation. Default is none.
+	 */
+	public void setPreprocessor(Consumer<Bitmap> aPreprocessor)
+	{
+		mPreprocessor = aPreprocessor;
+	}
+
+
+	public void process(Stream<? extends ImageSource> aSources, Consumer<BatchResult> aConsumer) throws InterruptedException
+	{
+		process(aSources.iterator(), aConsumer);
+	}
+
+
+	public void process(Iterable<? extends ImageSource> aSources, Consumer<BatchResult> aConsumer) throws InterruptedException
+	{
+		process(aSources.iterator(), aConsumer);
+	}
+
+
+	/**
+	 * Processes all sources and passes the result of each to the consumer in input order. Pages failing to decode or
+	 * process are reported with the exception and don't stop the batch. Returns when all results have been consumed and
+	 * the worker threads have finished, also when the consumer throws.
+	 */
+	public void process(Iterator<? extends ImageSource> aSources, Consumer<BatchResult> aConsumer) throws InterruptedException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(mThreadCount);
+		ArrayDeque<Future<BatchResult>> inFlight = new ArrayDeque<>();
+
+		try
+		{
+			for (int index = 0; aSources.hasNext(); index++)
+			{
+				if (inFlight.size() >= mMaxInFlight)
+				{
+					aConsumer.accept(getResult(inFlight.removeFirst()));
+				}
+
+				int pageIndex = index;
+				ImageSource source = aSources.next();
+
+				inFlight.addLast(executor.submit(() -> processPage(pageIndex, source)));
+			}
+
+			while (!inFlight.isEmpty())
+			{
+				aConsumer.accept(getResult(inFlight.removeFirst()));
+			}
+		}
+		finally
+		{
+			for (Future<BatchResult> future : inFlight)
+			{
+				future.cancel(true);
+			}
+
+			executor.shutdownNow();
+
+			try
+			{
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+
+	private BatchResult processPage(int aIndex, ImageSource aSource)
+	{
+		try
+		{
+			Bitmap bitmap = new Bitmap(aSource.read());
+
+			if (mPreprocessor != null)
+			{
+				mPreprocessor.accept(bitmap);
+			}
+
+			Page page = new Page(bitmap);
+
+			OCRSession session = new OCRSession(mModel);
+			session.loadPage(page, mSettingsProvider.apply(page));
+			session.scan(0, 0, 1, 1, mResolver);
+			session.detachScanResult();
+
+			return new BatchResult(aIndex, aSource, session.getScanResult(), null);
+		}
+		catch (Exception e)
+		{
+			return new BatchResult(aIndex, aSource, null, e);
+		}
+	}
+
+
+	private static BatchResult getResult(Future<BatchResult> aFuture) throws InterruptedException
+	{
+		try
+		{
+			return aFuture.get();
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof Error)
+			{
+				throw (Error)e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+}
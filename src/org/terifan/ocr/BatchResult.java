@@ -0,0 +1,65 @@
+package org.terifan.ocr;
+
+import java.util.ArrayList;
+
+
+/**
+ * The outcome of processing one ImageSource in a batch.
+ */
+public class BatchResult
+{
+	private final int mIndex;
+	private final ImageSource mSource;
+	private final ArrayList<TextBox> mScanResult;
+	private final Exception mError;
+
+
+	BatchResult(int aIndex, ImageSource aSource, ArrayList<TextBox> aScanResult, Exception aError)
+	{
+		mIndex = aIndex;
+		mSource = aSource;
+		mScanResult = aScanResult;
+		mError = aError;
+	}
+
+
+	/**
+	 * @return position of the source in the batch, starting at zero
+	 */
+	public int getIndex()
+	{
+		return mIndex;
+	}
+
+
+	public ImageSource getSource()
+	{
+		return mSource;
+	}
+
+
+	/**
+	 * @return the words accepted by the Resolver or null if the page failed. The words are detached from the page, so
+	 *   TextBox.getBitmap returns null.
+	 */
+	public ArrayList<TextBox> getScanResult()
+	{
+		return mScanResult;
+	}
+
+
+	/**
+	 * @return the exception thrown while decoding or processing the page or null if it succeeded
+	 */
+	public Exception getError()
+	{
+		return mError;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return "BatchResult[index=" + mIndex + ",source=" + mSource.getName() + (mError != null ? ",error=" + mError : ",words=" + mScanResult.size()) + "]";
+	}
+}
@@ -6,9 +6,17 @@ import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 
 public class Bitmap
@@ -19,10 +27,19 @@ public class Bitmap
 
 	private BufferedImage mImage;
 	private byte[] mRaster;
+	private int mOffset;
+	private int mStride;
 	private int mWidth;
 	private int mHeight;
+	private volatile PackedBitmap mPackedBitmap;
+	private volatile IntegralImage mIntegralImage;
 
 
+	/**
+	 * Creates a Bitmap from a copy of an image, so methods like eraseLines never modify the image. An 8-bit gray image
+	 * is copied row by row, other images are converted by drawing them on a gray image. Use wrap(BufferedImage) or
+	 * wrap(DataBufferByte, int, int, int) to share the pixels of a gray image instead.
+	 */
 	public Bitmap(BufferedImage aBufferedImage)
 	{
 		if (aBufferedImage == null)
@@ -32,9 +49,20 @@ public class Bitmap
 
 		mWidth = aBufferedImage.getWidth();
 		mHeight = aBufferedImage.getHeight();
-
 		mImage = new BufferedImage(mWidth, mHeight, BufferedImage.TYPE_BYTE_GRAY);
 		mRaster = ((DataBufferByte)mImage.getRaster().getDataBuffer()).getData();
+		mStride = mWidth;
+
+		Bitmap gray = aBufferedImage.getType() == BufferedImage.TYPE_BYTE_GRAY ? wrapGray(aBufferedImage) : null;
+
+		if (gray != null)
+		{
+			for (int y = 0; y < mHeight; y++)
+			{
+				System.arraycopy(gray.mRaster, gray.mOffset + y * gray.mStride, mRaster, y * mStride, mWidth);
+			}
+			return;
+		}
 
 		Graphics2D g = mImage.createGraphics();
 		g.drawImage(aBufferedImage, 0, 0, null);
@@ -42,6 +70,120 @@ public class Bitmap
 	}
 
 
+	private Bitmap(byte[] aPixels, int aOffset, int aStride, int aWidth, int aHeight)
+	{
+		if (aWidth <= 0 || aHeight <= 0 || aStride < aWidth || aOffset < 0 || aOffset + (long)aStride * (aHeight - 1) + aWidth > aPixels.length)
+		{
+			throw new IllegalArgumentException("Illegal raster layout: width: " + aWidth + ", height: " + aHeight + ", stride: " + aStride + ", offset: " + aOffset + ", length: " + aPixels.length);
+		}
+
+		ColorSpace cs = ColorSpace.getInstance(ColorSpace.CS_GRAY);
+		ComponentColorModel cm = new ComponentColorModel(cs, new int[]{8}, false, true, ComponentColorModel.OPAQUE, DataBuffer.TYPE_BYTE);
+		WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(aPixels, aPixels.length), aWidth, aHeight, aStride, 1, new int[]{aOffset}, null);
+
+		mImage = new BufferedImage(cm, raster, false, null);
+		mRaster = aPixels;
+		mOffset = aOffset;
+		mStride = aStride;
+		mWidth = aWidth;
+		mHeight = aHeight;
+	}
+
+
+	/**
+	 * Returns a Bitmap sharing an array of 8-bit gray pixels where 0 is black and 255 white. Changes to the Bitmap are
+	 * visible in the array and vice versa.
+	 *
+	 * @param aOffset index of the top left pixel
+	 * @param aStride distance between the first pixels of two consecutive rows
+	 */
+	public static Bitmap wrap(byte[] aPixels, int aOffset, int aStride, int aWidth, int aHeight)
+	{
+		return new Bitmap(aPixels, aOffset, aStride, aWidth, aHeight);
+	}
+
+
+	/**
+	 * Returns a Bitmap sharing the pixels of a TYPE_BYTE_GRAY image, which may be a sub image. Changes to the Bitmap
+	 * are visible in the image and vice versa. Use the constructor to copy the pixels instead.
+	 *
+	 * @throws IllegalArgumentException if the image isn't TYPE_BYTE_GRAY
+	 */
+	public static Bitmap wrap(BufferedImage aImage)
+	{
+		Bitmap bitmap = aImage.getType() == BufferedImage.TYPE_BYTE_GRAY ? wrapGray(aImage) : null;
+
+		if (bitmap == null)
+		{
+			throw new IllegalArgumentException("Only TYPE_BYTE_GRAY images can be wrapped: " + aImage);
+		}
+
+		return bitmap;
+	}
+
+
+	/**
+	 * Returns a Bitmap sharing the pixels of a gray DataBufferByte, starting at the offset of the buffer.
+	 */
+	public static Bitmap wrap(DataBufferByte aBuffer, int aStride, int aWidth, int aHeight)
+	{
+		return new Bitmap(aBuffer.getData(), aBuffer.getOffset(), aStride, aWidth, aHeight);
+	}
+
+
+	/**
+	 * Returns a Bitmap of the gray pixels starting at the position of the buffer. The array of a heap buffer is shared
+	 * without copying, the content of a direct or read-only buffer is copied once. The position of the buffer is not
+	 * changed.
+	 */
+	public static Bitmap wrap(ByteBuffer aBuffer, int aStride, int aWidth, int aHeight)
+	{
+		if (aBuffer.hasArray())
+		{
+			return new Bitmap(aBuffer.array(), aBuffer.arrayOffset() + aBuffer.position(), aStride, aWidth, aHeight);
+		}
+
+		if (aWidth <= 0 || aHeight <= 0 || aStride < aWidth || (long)aStride * (aHeight - 1) + aWidth > aBuffer.remaining())
+		{
+			throw new IllegalArgumentException("Illegal raster layout: width: " + aWidth + ", height: " + aHeight + ", stride: " + aStride + ", remaining: " + aBuffer.remaining());
+		}
+
+		byte[] pixels = new byte[aStride * (aHeight - 1) + aWidth];
+		aBuffer.duplicate().get(pixels);
+
+		return new Bitmap(pixels, 0, aStride, aWidth, aHeight);
+	}
+
+
+	/**
+	 * Returns a Bitmap sharing the pixels of a TYPE_BYTE_GRAY image, which may be a sub image, or null if the raster
+	 * layout isn't supported.
+	 */
+	private static Bitmap wrapGray(BufferedImage aImage)
+	{
+		WritableRaster raster = aImage.getRaster();
+
+		if (!(raster.getSampleModel() instanceof ComponentSampleModel) || !(raster.getDataBuffer() instanceof DataBufferByte))
+		{
+			return null;
+		}
+
+		ComponentSampleModel sm = (ComponentSampleModel)raster.getSampleModel();
+
+		if (sm.getPixelStride() != 1 || raster.getDataBuffer().getNumBanks() != 1)
+		{
+			return null;
+		}
+
+		int offset = raster.getDataBuffer().getOffset() + sm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+
+		Bitmap bitmap = new Bitmap(((DataBufferByte)raster.getDataBuffer()).getData(), offset, sm.getScanlineStride(), aImage.getWidth(), aImage.getHeight());
+		bitmap.mImage = aImage;
+
+		return bitmap;
+	}
+
+
 	public BufferedImage getImage()
 	{
 		return mImage;
@@ -60,9 +202,68 @@ public class Bitmap
 	}
 
 
+	/**
+	 * Returns a bit packed copy of this Bitmap. The copy is created on first use and discarded when the Bitmap is modified.
+	 */
+	PackedBitmap getPackedBitmap()
+	{
+		PackedBitmap packed = mPackedBitmap;
+
+		if (packed == null)
+		{
+			synchronized (this)
+			{
+				packed = mPackedBitmap;
+
+				if (packed == null)
+				{
+					packed = mPackedBitmap = new PackedBitmap(this);
+				}
+			}
+		}
+
+		return packed;
+	}
+
+
+	/**
+	 * Returns a summed-area table of this Bitmap. The table uses four bytes per pixel so it's only created when requested
+	 * by a caller making many rectangle queries, fill queries use it once it exists. It's discarded when the Bitmap is
+	 * modified.
+	 */
+	IntegralImage getIntegralImage()
+	{
+		IntegralImage integral = mIntegralImage;
+
+		if (integral == null)
+		{
+			PackedBitmap packed = getPackedBitmap();
+
+			synchronized (this)
+			{
+				integral = mIntegralImage;
+
+				if (integral == null)
+				{
+					integral = mIntegralImage = new IntegralImage(packed);
+				}
+			}
+		}
+
+		return integral;
+	}
+
+
+	private void invalidate()
+	{
+		mPackedBitmap = null;
+		mIntegralImage = null;
+	}
+
+
 	public boolean isBlack(int x, int y)
 	{
-		return mRaster[mWidth * y + x] >= 0; // 0-127 black
+		return mRaster[mOffset + mStride * y + x] >= 0; // 0-127 black
 	}
 
 
@@ -73,7 +274,7 @@ public class Bitmap
 			return aDefault;
 		}
 
-		return mRaster[mWidth * y + x] >= 0; // 0-127 black
+		return mRaster[mOffset + mStride * y + x] >= 0; // 0-127 black
 	}
 
 
@@ -94,23 +295,62 @@ public class Bitmap
 	}
 
 
+	/**
+	 * Rotates the Bitmap clockwise. Angles other than multiples of 90 degrees enlarge the Bitmap to fit the rotated
+	 * page, with white corners. The rotated pixels are stored in a new raster, a wrapped raster is no longer shared.
+	 */
 	public Bitmap rotate(double aAngleDegrees)
 	{
-		if (aAngleDegrees == 90 || aAngleDegrees == 180 || aAngleDegrees == 270)
+		double angle = aAngleDegrees % 360;
+
+		if (angle < 0)
+		{
+			angle += 360;
+		}
+		if (angle == 0)
+		{
+			return this;
+		}
+
+		BufferedImage rotated;
+		if (angle == 90 || angle == 180 || angle == 270)
 		{
-			rotateFixed(mImage, (int)aAngleDegrees);
+			rotated = rotateFixed(mImage, (int)angle);
 		}
-		else if (aAngleDegrees != 0)
+		else
 		{
-			mImage = ImageRotator.rotate(mImage, aAngleDegrees, 1, 0xFFFFFFFF);
+			rotated = ImageRotator.rotate(mImage, angle, 1, 0xFFFFFFFF);
 		}
 
+		BufferedImage image = new BufferedImage(rotated.getWidth(), rotated.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+
+		Graphics2D g = image.createGraphics();
+		g.drawImage(rotated, 0, 0, null);
+		g.dispose();
+
+		mImage = image;
+		mRaster = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+		mOffset = 0;
+		mStride = image.getWidth();
+		mWidth = image.getWidth();
+		mHeight = image.getHeight();
+
+		invalidate();
+
 		return this;
 	}
 
 
 	double getRectFillFactor(int aOffsetX, int aOffsetY, int aWidth, int aHeight)
 	{
+		if (aOffsetX >= 0 && aOffsetY >= 0 && aWidth >= 0 && aHeight >= 0 && aOffsetX + aWidth <= mWidth && aOffsetY + aHeight <= mHeight)
+		{
+			IntegralImage integral = mIntegralImage;
+			int count = integral != null ? integral.countBlack(aOffsetX, aOffsetY, aWidth, aHeight) : getPackedBitmap().countBlackInArea(aOffsetX, aOffsetX + aWidth, aOffsetY, aOffsetY + aHeight);
+
+			return count / (double)(aWidth * aHeight);
+		}
+
 		int c = 0;
 		for (int y = 0; y < aHeight; y++)
 		{
@@ -494,23 +734,88 @@ public class Bitmap
 		}
 
 		g.dispose();
+
+		invalidate();
 	}
 
 
 	byte colorAt(int aX, int aY)
 	{
-		return mRaster[aY * mWidth + aX];
+		return mRaster[mOffset + aY * mStride + aX];
 	}
 
 
 	public Insets getBorders(int x, int y, int w, int h)
+	{
+		return getBorders(x, y, w, h, new Insets(0, 0, 0, 0));
+	}
+
+
+	/**
+	 * Finds the white borders of an area, storing them in the provided Insets.
+	 *
+	 * @return the provided Insets
+	 */
+	Insets getBorders(int x, int y, int w, int h, Insets aBorders)
 	{
 		int x0 = x;
 		int y0 = y;
 		int x1 = x + w;
 		int y1 = y + h;
 
-		Insets borders = new Insets(0, 0, 0, 0);
+		aBorders.set(0, 0, 0, 0);
+
+		if (x0 < 0 || y0 < 0 || x1 >= mWidth || y1 >= mHeight)
+		{
+			return getBordersUnchecked(x, y, w, h, aBorders);
+		}
+
+		PackedBitmap packed = getPackedBitmap();
+
+		Insets borders = aBorders;
+
+		for (y = y0; y < y1; y++)
+		{
+			if (packed.hasBlack(y, x0, x1))
+			{
+				borders.top = y - y0;
+				break;
+			}
+		}
+
+		for (y = y1; y >= y0; y--)
+		{
+			if (packed.hasBlack(y, x0, x1))
+			{
+				borders.bottom = y1 - y;
+				break;
+			}
+		}
+
+		x = packed.firstBlackColumn(x0, x1, y0, y1);
+		if (x != -1)
+		{
+			borders.left = x - x0;
+		}
+
+		x = packed.lastBlackColumn(x0, x1 + 1, y0, y1);
+		if (x != -1)
+		{
+			borders.right = x1 - x;
+		}
+
+		return borders;
+	}
+
+
+	private Insets getBordersUnchecked(int x, int y, int w, int h, Insets aBorders)
+	{
+		int x0 = x;
+		int y0 = y;
+		int x1 = x + w;
+		int y1 = y + h;
+
+		Insets borders = aBorders;
 
 		outer:
 		for (y = y0; y < y1; y++)
@@ -568,6 +873,57 @@ public class Bitmap
 	}
 
 
+	/**
+	 * Resamples an area of the raster into a square matrix of booleans using a box filter. Each cell of the matrix
+	 * covers an equal part of the area and is black when the average gray level of the pixels it covers, weighted by
+	 * the fraction of each pixel inside the cell, is at or below the threshold.
+	 *
+	 * @param aOutput
+	 *   receives aSize * aSize cells in row order
+	 */
+	void resample(int aX, int aY, int aWidth, int aHeight, int aSize, int aThreshold, boolean[] aOutput)
+	{
+		if (aWidth <= 0 || aHeight <= 0)
+		{
+			Arrays.fill(aOutput, 0, aSize * aSize, false);
+			return;
+		}
+
+		// source pixels and matrix cells are measured in a common unit where a pixel is aSize wide and a cell aWidth wide
+		long limit = (long)(aThreshold + 1) * aWidth * aHeight;
+
+		for (int j = 0; j < aSize; j++)
+		{
+			int cy0 = j * aHeight;
+			int cy1 = cy0 + aHeight;
+
+			for (int i = 0; i < aSize; i++)
+			{
+				int cx0 = i * aWidth;
+				int cx1 = cx0 + aWidth;
+				long sum = 0;
+
+				for (int sy = cy0 / aSize; sy * aSize < cy1; sy++)
+				{
+					int wy = Math.min((sy + 1) * aSize, cy1) - Math.max(sy * aSize, cy0);
+					int offset = mOffset + (aY + sy) * mStride + aX;
+					long row = 0;
+
+					for (int sx = cx0 / aSize; sx * aSize < cx1; sx++)
+					{
+						int wx = Math.min((sx + 1) * aSize, cx1) - Math.max(sx * aSize, cx0);
+						row += wx * (0xff & mRaster[offset + sx]);
+					}
+
+					sum += wy * row;
+				}
+
+				aOutput[j * aSize + i] = sum < limit;
+			}
+		}
+	}
+
+
 	public BufferedImage getRegion(int x0, int y0, int x1, int y1)
 	{
 		return mImage.getSubimage(x0, y0, x1-x0, y1-y0);
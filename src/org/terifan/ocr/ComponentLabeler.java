@@ -0,0 +1,418 @@
+package org.terifan.ocr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+
+/**
+ * Finds 8-connected groups of black pixels in a single pass over the rows of a PackedBitmap.
+ *
+ * Each row is split into runs of black and white pixels. Runs overlapping runs of the previous row are merged
+ * using union-find where the oldest run always becomes the root, so components are reported in the order their
+ * first pixel is found in a raster scan. White runs are merged with 4-connectivity and a white region not reaching
+ * the edge of the scanned area is counted as a hole of the component directly above its first row.
+ */
+class ComponentLabeler
+{
+	private final static int MIN_BAND_HEIGHT = 64;
+
+	private final PackedBitmap mBitmap;
+
+
+	public ComponentLabeler(PackedBitmap aBitmap)
+	{
+		mBitmap = aBitmap;
+	}
+
+
+	/**
+	 * Label all components inside the area.
+	 *
+	 * @param aFromX first column inclusive
+	 * @param aFromY first row inclusive
+	 * @param aToX last column exclusive
+	 * @param aToY last row exclusive
+	 * @return the components in the order their top left pixel is found scanning the rows top down
+	 */
+	public ArrayList<ConnectedComponent> label(int aFromX, int aFromY, int aToX, int aToY)
+	{
+		return label(aFromX, aFromY, aToX, aToY, null, 0);
+	}
+
+
+	/**
+	 * Label all components inside the area. The area is split into horizontal bands labeled concurrently after which
+	 * runs touching across the band seams are merged. The result is identical to labeling the area in a single pass.
+	 *
+	 * @param aPool pool used for labeling the bands or null to label the area in a single pass
+	 * @param aBandHeight number of rows in each band or zero to split the area into four bands per thread
+	 * @return the components in the order their top left pixel is found scanning the rows top down
+	 */
+	public ArrayList<ConnectedComponent> label(int aFromX, int aFromY, int aToX, int aToY, ForkJoinPool aPool, int aBandHeight)
+	{
+		if (aFromX >= aToX || aFromY >= aToY)
+		{
+			return new ArrayList<>();
+		}
+
+		if (aPool == null)
+		{
+			return collect(aFromY, scanBand(aFromX, aFromY, aToX, aToY, aFromY, aToY));
+		}
+
+		int bandHeight = aBandHeight > 0 ? aBandHeight : Math.max(MIN_BAND_HEIGHT, (aToY - aFromY + 4 * aPool.getParallelism() - 1) / (4 * aPool.getParallelism()));
+
+		ArrayList<ForkJoinTask<Runs[]>> tasks = new ArrayList<>();
+
+		for (int y = aFromY; y < aToY; y += bandHeight)
+		{
+			int y0 = y;
+			int y1 = Math.min(y + bandHeight, aToY);
+
+			tasks.add(aPool.submit(() -> scanBand(aFromX, y0, aToX, y1, aFromY, aToY)));
+		}
+
+		Runs[] merged = null;
+
+		for (ForkJoinTask<Runs[]> task : tasks)
+		{
+			Runs[] band = task.join();
+
+			if (merged == null)
+			{
+				merged = band;
+			}
+			else
+			{
+				int prevBlackStart = merged[0].getRowStart(merged[0].mRows - 1);
+				int prevWhiteStart = merged[1].getRowStart(merged[1].mRows - 1);
+				int blackStart = merged[0].mCount;
+				int whiteStart = merged[1].mCount;
+
+				merged[0].append(band[0], blackStart);
+				merged[1].append(band[1], blackStart);
+
+				int blackEnd = merged[0].getRowEnd(merged[0].mRows - band[0].mRows);
+				int whiteEnd = merged[1].getRowEnd(merged[1].mRows - band[1].mRows);
+
+				connect(merged[0], prevBlackStart, blackStart, blackStart, blackEnd, 1);
+				connect(merged[1], prevWhiteStart, whiteStart, whiteStart, whiteEnd, 0);
+				findEnclosing(merged[0], prevBlackStart, blackStart, merged[1], prevWhiteStart, whiteStart, whiteStart, whiteEnd);
+			}
+		}
+
+		return collect(aFromY, merged);
+	}
+
+
+	/**
+	 * Split the rows [aFromY, aToY) into runs and merge the runs within the band.
+	 *
+	 * @param aTop first row of the whole area
+	 * @param aBottom last row exclusive of the whole area
+	 * @return black and white runs
+	 */
+	private Runs[] scanBand(int aFromX, int aFromY, int aToX, int aToY, int aTop, int aBottom)
+	{
+		Runs black = new Runs(aToY - aFromY);
+		Runs white = new Runs(aToY - aFromY);
+
+		for (int y = aFromY; y < aToY; y++)
+		{
+			scanRow(y, y - aFromY, aFromX, aToX, y == aTop || y == aBottom - 1, black, white);
+		}
+
+		return new Runs[]{black, white};
+	}
+
+
+	private void scanRow(int aY, int aRow, int aFromX, int aToX, boolean aEdgeRow, Runs aBlack, Runs aWhite)
+	{
+		int prevBlackStart = aBlack.getRowStart(aRow - 1);
+		int prevBlackEnd = aBlack.mCount;
+		int prevWhiteStart = aWhite.getRowStart(aRow - 1);
+		int prevWhiteEnd = aWhite.mCount;
+
+		for (int x = aFromX; x < aToX;)
+		{
+			int x0 = mBitmap.nextBlack(aY, x, aToX);
+			if (x0 == -1)
+			{
+				x0 = aToX;
+			}
+			if (x0 > x)
+			{
+				aWhite.add(x, x0 - 1, aEdgeRow || x == aFromX || x0 == aToX);
+			}
+			if (x0 == aToX)
+			{
+				break;
+			}
+
+			x = mBitmap.nextWhite(aY, x0, aToX);
+			if (x == -1)
+			{
+				x = aToX;
+			}
+
+			aBlack.add(x0, x - 1, false);
+		}
+
+		aBlack.endRow(aRow);
+		aWhite.endRow(aRow);
+
+		if (aRow > 0)
+		{
+			connect(aBlack, prevBlackStart, prevBlackEnd, prevBlackEnd, aBlack.mCount, 1);
+			connect(aWhite, prevWhiteStart, prevWhiteEnd, prevWhiteEnd, aWhite.mCount, 0);
+			findEnclosing(aBlack, prevBlackStart, prevBlackEnd, aWhite, prevWhiteStart, prevWhiteEnd, prevWhiteEnd, aWhite.mCount);
+		}
+	}
+
+
+	/**
+	 * Merge runs of a row with the overlapping runs of the row above.
+	 *
+	 * @param aReach 1 for 8-connectivity and 0 for 4-connectivity
+	 */
+	private static void connect(Runs aRuns, int aPrevStart, int aPrevEnd, int aStart, int aEnd, int aReach)
+	{
+		for (int i = aStart, j = aPrevStart; i < aEnd; i++)
+		{
+			while (j < aPrevEnd && aRuns.mX1[j] < aRuns.mX0[i] - aReach)
+			{
+				j++;
+			}
+			for (int k = j; k < aPrevEnd && aRuns.mX0[k] <= aRuns.mX1[i] + aReach; k++)
+			{
+				aRuns.union(i, k);
+			}
+		}
+	}
+
+
+	/**
+	 * White runs not touching any white run in the row above are bounded above by black pixels only. Record the black
+	 * run directly above the first pixel of each such run, for the first run of a white region this is the enclosing
+	 * component.
+	 */
+	private static void findEnclosing(Runs aBlack, int aPrevBlackStart, int aPrevBlackEnd, Runs aWhite, int aPrevWhiteStart, int aPrevWhiteEnd, int aStart, int aEnd)
+	{
+		for (int i = aStart, j = aPrevWhiteStart, k = aPrevBlackStart; i < aEnd; i++)
+		{
+			int x0 = aWhite.mX0[i];
+
+			while (j < aPrevWhiteEnd && aWhite.mX1[j] < x0)
+			{
+				j++;
+			}
+			if (j < aPrevWhiteEnd && aWhite.mX0[j] <= aWhite.mX1[i])
+			{
+				continue;
+			}
+
+			while (k < aPrevBlackEnd && aBlack.mX1[k] < x0)
+			{
+				k++;
+			}
+			if (k < aPrevBlackEnd && aBlack.mX0[k] <= x0)
+			{
+				aWhite.mAbove[i] = k;
+			}
+		}
+	}
+
+
+	private static ArrayList<ConnectedComponent> collect(int aFromY, Runs[] aRuns)
+	{
+		Runs aBlack = aRuns[0];
+		Runs aWhite = aRuns[1];
+		ArrayList<ConnectedComponent> components = new ArrayList<>();
+		int[] componentIndex = new int[aBlack.mCount];
+
+		for (int row = 0, i = 0; row < aBlack.mRows; row++)
+		{
+			int y = aFromY + row;
+
+			for (int end = aBlack.mRowEnd[row]; i < end; i++)
+			{
+				int root = aBlack.find(i);
+				int x0 = aBlack.mX0[i];
+				int x1 = aBlack.mX1[i];
+				ConnectedComponent component;
+
+				if (root == i)
+				{
+					component = new ConnectedComponent(x0, y, x1, y);
+					componentIndex[i] = components.size();
+					components.add(component);
+				}
+				else
+				{
+					component = components.get(componentIndex[root]);
+					component.mMinX = Math.min(component.mMinX, x0);
+					component.mMaxX = Math.max(component.mMaxX, x1);
+					component.mMaxY = y;
+				}
+
+				component.mPixelCount += x1 - x0 + 1;
+			}
+		}
+
+		for (int i = 0; i < aWhite.mCount; i++)
+		{
+			if (aWhite.mEdge[i])
+			{
+				aWhite.mEdge[aWhite.find(i)] = true;
+			}
+		}
+
+		for (int i = 0; i < aWhite.mCount; i++)
+		{
+			if (aWhite.mParent[i] == i && !aWhite.mEdge[i] && aWhite.mAbove[i] != -1)
+			{
+				components.get(componentIndex[aBlack.find(aWhite.mAbove[i])]).mHoleCount++;
+			}
+		}
+
+		return components;
+	}
+
+
+	/**
+	 * Runs of one color stored row by row.
+	 */
+	private static class Runs
+	{
+		int mCount;
+		int mRows;
+		int[] mRowEnd;
+		int[] mX0;
+		int[] mX1;
+		int[] mParent;
+		int[] mAbove;
+		boolean[] mEdge;
+
+
+		Runs(int aRows)
+		{
+			mRowEnd = new int[aRows];
+			mX0 = new int[256];
+			mX1 = new int[256];
+			mParent = new int[256];
+			mAbove = new int[256];
+			mEdge = new boolean[256];
+		}
+
+
+		void add(int aX0, int aX1, boolean aEdge)
+		{
+			if (mCount == mX0.length)
+			{
+				int n = 2 * mCount;
+				mX0 = Arrays.copyOf(mX0, n);
+				mX1 = Arrays.copyOf(mX1, n);
+				mParent = Arrays.copyOf(mParent, n);
+				mAbove = Arrays.copyOf(mAbove, n);
+				mEdge = Arrays.copyOf(mEdge, n);
+			}
+
+			mX0[mCount] = aX0;
+			mX1[mCount] = aX1;
+			mParent[mCount] = mCount;
+			mAbove[mCount] = -1;
+			mEdge[mCount] = aEdge;
+			mCount++;
+		}
+
+
+		/**
+		 * Marks the end of a row, mRowEnd holds the index following the last run of each row.
+		 */
+		void endRow(int aRow)
+		{
+			mRowEnd[aRow] = mCount;
+			mRows = aRow + 1;
+		}
+
+
+		int getRowStart(int aRow)
+		{
+			return aRow <= 0 ? 0 : mRowEnd[aRow - 1];
+		}
+
+
+		int getRowEnd(int aRow)
+		{
+			return mRowEnd[aRow];
+		}
+
+
+		/**
+		 * Append the runs of the band following this band.
+		 *
+		 * @param aBlackOffset number of black runs preceding the appended band, used to translate references to black runs
+		 */
+		void append(Runs aOther, int aBlackOffset)
+		{
+			int offset = mCount;
+			int n = offset + aOther.mCount;
+
+			if (n > mX0.length)
+			{
+				mX0 = Arrays.copyOf(mX0, n);
+				mX1 = Arrays.copyOf(mX1, n);
+				mParent = Arrays.copyOf(mParent, n);
+				mAbove = Arrays.copyOf(mAbove, n);
+				mEdge = Arrays.copyOf(mEdge, n);
+			}
+
+			System.arraycopy(aOther.mX0, 0, mX0, offset, aOther.mCount);
+			System.arraycopy(aOther.mX1, 0, mX1, offset, aOther.mCount);
+			System.arraycopy(aOther.mEdge, 0, mEdge, offset, aOther.mCount);
+
+			for (int i = 0; i < aOther.mCount; i++)
+			{
+				mParent[offset + i] = aOther.mParent[i] + offset;
+				mAbove[offset + i] = aOther.mAbove[i] == -1 ? -1 : aOther.mAbove[i] + aBlackOffset;
+			}
+
+			mRowEnd = Arrays.copyOf(mRowEnd, mRows + aOther.mRows);
+			for (int i = 0; i < aOther.mRows; i++)
+			{
+				mRowEnd[mRows + i] = aOther.mRowEnd[i] + offset;
+			}
+
+			mCount = n;
+			mRows += aOther.mRows;
+		}
+
+
+		int find(int aRun)
+		{
+			while (mParent[aRun] != aRun)
+			{
+				aRun = mParent[aRun] = mParent[mParent[aRun]];
+			}
+			return aRun;
+		}
+
+
+		void union(int aRunA, int aRunB)
+		{
+			int a = find(aRunA);
+			int b = find(aRunB);
+
+			if (a < b)
+			{
+				mParent[b] = a;
+			}
+			else if (b < a)
+			{
+				mParent[a] = b;
+			}
+		}
+	}
+}
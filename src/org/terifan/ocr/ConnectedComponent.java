@@ -0,0 +1,93 @@
+package org.terifan.ocr;
+
+import java.awt.Rectangle;
+
+
+/**
+ * A group of 8-connected black pixels found by the ComponentLabeler.
+ */
+public class ConnectedComponent
+{
+	int mMinX;
+	int mMinY;
+	int mMaxX;
+	int mMaxY;
+	int mPixelCount;
+	int mHoleCount;
+
+
+	ConnectedComponent(int aMinX, int aMinY, int aMaxX, int aMaxY)
+	{
+		mMinX = aMinX;
+		mMinY = aMinY;
+		mMaxX = aMaxX;
+		mMaxY = aMaxY;
+	}
+
+
+	/**
+	 * @return left most pixel inclusive
+	 */
+	public int getMinX()
+	{
+		return mMinX;
+	}
+
+
+	/**
+	 * @return top most pixel inclusive
+	 */
+	public int getMinY()
+	{
+		return mMinY;
+	}
+
+
+	/**
+	 * @return right most pixel inclusive
+	 */
+	public int getMaxX()
+	{
+		return mMaxX;
+	}
+
+
+	/**
+	 * @return bottom most pixel inclusive
+	 */
+	public int getMaxY()
+	{
+		return mMaxY;
+	}
+
+
+	/**
+	 * @return number of black pixels in the component
+	 */
+	public int getPixelCount()
+	{
+		return mPixelCount;
+	}
+
+
+	/**
+	 * @return number of 4-connected white regions fully enclosed by the component
+	 */
+	public int getHoleCount()
+	{
+		return mHoleCount;
+	}
+
+
+	public Rectangle getBounds()
+	{
+		return new Rectangle(mMinX, mMinY, mMaxX - mMinX + 1, mMaxY - mMinY + 1);
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return "ConnectedComponent[x=" + mMinX + ",y=" + mMinY + ",width=" + (mMaxX - mMinX + 1) + ",height=" + (mMaxY - mMinY + 1) + ",pixels=" + mPixelCount + ",holes=" + mHoleCount + "]";
+	}
+}
@@ -5,12 +5,15 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Insets;
-import java.awt.Polygon;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
 
 
 class CurvatureClassifier
@@ -21,28 +24,87 @@ class CurvatureClassifier
 		+ "abcdefghijklm" + "nopqrstuvwxyz"
 		+ "0123456789@+'" + "/\\\"*.-:,&()=*";
 
-	private ArrayList<Symbol> mSymbols;
-	private Page mPage;
-	private int mMatrixSize;
-	private double mOneThirdMatrix;
+	private volatile TemplateMatrix mTemplates;
+	private final int mMatrixSize;
+	private final DistanceMetric mDistanceMetric;
+	private final ThreadLocal<int[]> mPreviousMatch;
+	private final ThreadLocal<FeatureExtractor> mExtractor;
 
 
 	public CurvatureClassifier(int aMatrixSize)
+	{
+		this(aMatrixSize, DistanceMetric.CHESSBOARD);
+	}
+
+
+	public CurvatureClassifier(int aMatrixSize, DistanceMetric aDistanceMetric)
 	{
 		mMatrixSize = aMatrixSize;
-		mOneThirdMatrix = mMatrixSize / 3.0;
+		mDistanceMetric = aDistanceMetric;
+		mPreviousMatch = ThreadLocal.withInitial(() -> new int[]{-1});
+		mExtractor = ThreadLocal.withInitial(() -> new FeatureExtractor(mMatrixSize));
 
 		reset();
 	}
 
 
+	/**
+	 * Creates a classifier sharing the symbols learned by another classifier at the time of the call. Symbols learned
+	 * later by either classifier aren't shared.
+	 */
+	CurvatureClassifier(CurvatureClassifier aClassifier)
+	{
+		this(aClassifier.mMatrixSize, aClassifier.mDistanceMetric);
+
+		mTemplates = aClassifier.mTemplates;
+	}
+
+
+	int getMatrixSize()
+	{
+		return mMatrixSize;
+	}
+
+
+	DistanceMetric getDistanceMetric()
+	{
+		return mDistanceMetric;
+	}
+
+
+	/**
+	 * Returns the immutable matrix of the learned symbols, replaced when symbols are added.
+	 */
+	TemplateMatrix getTemplates()
+	{
+		return mTemplates;
+	}
+
+
+	/**
+	 * Returns the learned symbols. The list is replaced, not modified, when more symbols are learned.
+	 */
 	public ArrayList<Symbol> getSymbols()
 	{
-		return mSymbols;
+		return mTemplates.getSymbols();
 	}
 
 
 	public void learn(String aFontName, Bitmap aBitmap, String aAlphabet)
+	{
+		addSymbols(learnSymbols(aFontName, aBitmap, aAlphabet, null));
+	}
+
+
+	/**
+	 * Extract the symbols of an alphabet sheet, a grid of 13 x 6 cells of 71 x 69 pixels each, without adding them.
+	 * The debug image of each symbol is rendered when first requested.
+	 *
+	 * @param aPool
+	 *   pool used to extract the cells concurrently or null to extract them on the calling thread
+	 * @return the symbols in cell order
+	 */
+	ArrayList<Symbol> learnSymbols(String aFontName, Bitmap aBitmap, String aAlphabet, ForkJoinPool aPool)
 	{
 		if (aAlphabet == null)
 		{
@@ -65,437 +127,121 @@ class CurvatureClassifier
 			}
 		}
 
-		for (TextBox box : textBoxes)
+		String alphabet = aAlphabet;
+		Symbol[] cells = new Symbol[textBoxes.size()];
+
+		IntConsumer learnCell = i ->
 		{
-			Symbol symbol = learnSymbol(aBitmap, aFontName, box, DEFAULT_ALPHABET, aAlphabet);
+			TextBox box = textBoxes.get(i);
+			Symbol symbol = learnSymbol(aBitmap, aFontName, box, DEFAULT_ALPHABET, alphabet);
 
 			if (symbol != null)
 			{
-				generateCurvatureBitmap(symbol, box);
-
-				symbol.setSymbolBitmap(box.getSymbolBitmap());
-			}
-		}
-	}
-
-
-	public void reset()
-	{
-		mSymbols = new ArrayList<>();
-	}
-
+				box.setBitmap(getRegion(aBitmap, box, symbol.mBorders));
 
-	private void extractBitmap(Bitmap aBitmap, Symbol aSymbol)
-	{
-		TextBox box = aSymbol.mTextBox;
-
-		Insets borders = aBitmap.getBorders(box.x, box.y, box.width, box.height);
-
-		aSymbol.mBorders = borders;
-
-		BufferedImage tmp = aBitmap.getRegion(box.x + borders.left, box.y + borders.top, box.x + box.width - borders.right + 1, box.y + box.height - borders.bottom + 1);
+				symbol.setSymbolBitmapRenderer(() -> generateCurvatureBitmap(symbol, box));
 
-		box.setBitmap(tmp);
-
-		tmp = ImageTools.resize(tmp, mMatrixSize, mMatrixSize, RenderingHints.VALUE_INTERPOLATION_BILINEAR, BufferedImage.TYPE_INT_RGB);
-
-		for (int y = 0; y < mMatrixSize; y++)
-		{
-			for (int x = 0; x < mMatrixSize; x++)
-			{
-				int c = tmp.getRGB(x, y);
-				c = ((255 & (c >> 16)) + (255 & (c >> 8)) + (255 & c)) / 3;
-				tmp.setRGB(x, y, c > WHITE_THRESHOLD ? 0xffffff : 0x000000);
+				cells[i] = symbol;
 			}
-		}
-
-		aSymbol.setBitmap(new Bitmap(tmp));
-	}
-
-
-	private void extractTemplateDistance(Symbol aSymbol)
-	{
-		aSymbol.mClosestPixel = new int[mMatrixSize][mMatrixSize];
+		};
 
-		for (int y = 0; y < mMatrixSize; y++)
+		if (aPool == null)
 		{
-			for (int x = 0; x < mMatrixSize; x++)
+			for (int i = 0; i < cells.length; i++)
 			{
-				aSymbol.mClosestPixel[y][x] = findClosestPixel(aSymbol, x, y);
+				learnCell.accept(i);
 			}
 		}
-	}
-
-
-	private void extractContour(Symbol aSymbol)
-	{
-		Bitmap image = aSymbol.getBitmap();
-
-		double[][] contour = new double[8][mMatrixSize];
-		int[][] count = new int[8][mMatrixSize];
-
-		int w = image.getWidth();
-		int h = image.getHeight();
-
-		double fx = mMatrixSize / (double)w;
-		double fy = mMatrixSize / (double)h;
-
-		for (int ori = 0; ori < 2; ori++)
+		else
 		{
-			for (int y = 0; y < h; y++)
-			{
-				int x = w * ori / 2;
-				for (; x < w; x++)
-				{
-					if (image.isBlack(x, y))
-					{
-						break;
-					}
-				}
-				int z = (int)Math.round(y * fy);
-				contour[4 * ori + 0][z] += fx * x;
-				count[4 * ori + 0][z] += 1;
-			}
-
-			for (int y = 0; y < h; y++)
-			{
-				int x = w - 1 - w * ori / 2;
-				for (; x >= 0; x--)
-				{
-					if (image.isBlack(x, y))
-					{
-						break;
-					}
-				}
-				int z = (int)Math.round(y * fy);
-				contour[4 * ori + 1][z] += fx * x;
-				count[4 * ori + 1][z] += 1;
-			}
-
-			for (int x = 0; x < w; x++)
+			ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(cells.length);
+			for (int i = 0; i < cells.length; i++)
 			{
-				int y = h * ori / 2;
-				for (; y < h; y++)
-				{
-					if (image.isBlack(x, y))
-					{
-						break;
-					}
-				}
-				int z = (int)Math.round(x * fx);
-				contour[4 * ori + 2][z] += fy * y;
-				count[4 * ori + 2][z] += 1;
+				int cell = i;
+				tasks.add(aPool.submit(() -> learnCell.accept(cell)));
 			}
-
-			for (int x = 0; x < w; x++)
+			for (ForkJoinTask<?> task : tasks)
 			{
-				int y = h - 1 - h * ori / 2;
-				for (; y >= 0; y--)
-				{
-					if (image.isBlack(x, y))
-					{
-						break;
-					}
-				}
-				int z = (int)Math.round(x * fx);
-				contour[4 * ori + 3][z] += fy * y;
-				count[4 * ori + 3][z] += 1;
+				task.join();
 			}
 		}
 
-		for (int ori = 0; ori < 8; ori++)
+		ArrayList<Symbol> symbols = new ArrayList<>();
+		for (Symbol symbol : cells)
 		{
-			for (int i = 0; i < mMatrixSize; i++)
+			if (symbol != null)
 			{
-				contour[ori][i] /= count[ori][i];
+				symbols.add(symbol);
 			}
 		}
 
-		aSymbol.mContour = contour;
+		return symbols;
 	}
 
 
-	private void extractSlopes(Symbol aSymbol)
+	/**
+	 * Adds symbols learned earlier, typically read from a template file.
+	 */
+	public synchronized void addSymbols(List<Symbol> aSymbols)
 	{
-		int[][] slopes = new int[8][mMatrixSize];
-		int[][] slopes2 = new int[8][mMatrixSize];
-		String[][] slopesX = new String[8][mMatrixSize];
-		double[][] contour = aSymbol.mContour;
-
-		for (int orientation = 0; orientation < 8; orientation++)
-		{
-			for (int index = 0; index < mMatrixSize; index++)
-			{
-				int b =                                (int)(contour[orientation][index    ]);
-				int a = index == 0               ? b : (int)(contour[orientation][index - 1]);
-				int c = index == mMatrixSize - 1 ? b : (int)(contour[orientation][index + 1]);
-
-				if (a == -1) a = mMatrixSize;
-				if (b == -1) b = mMatrixSize;
-				if (c == -1) c = mMatrixSize;
-
-				slopesX[orientation][index] = a+":"+b+":"+c;
-
-				int s;
-				int t;
-
-				if (b == mMatrixSize)
-				{
-					s = -1;
-					t = 0;
-				}
-				else if (a == b && b == c)
-				{
-					s = 0;
-					t = 1;
-				}
-				else if (a == mMatrixSize && b == c)
-				{
-					s = 0;
-					t = 2;
-				}
-				else if (a == b && c == mMatrixSize)
-				{
-					s = 0;
-					t = 3;
-				}
-				else if (a < b && c < b)
-				{
-					s = 2;
-					t = 4;
-				}
-				else if (a > b && c > b)
-				{
-					s = 0;
-					t = 5;
-				}
-				else if (a > b && c <= b)
-				{
-					s = 1;
-					t = 6;
-				}
-				else if (a >= b && c < b)
-				{
-					s = 1;
-					t = 7;
-				}
-				else if (a == mMatrixSize && c < b)
-				{
-					s = 1;
-					t = 8;
-				}
-				else if (a > b && c == mMatrixSize)
-				{
-					s = 1;
-					t = 9;
-				}
-				else if (a < b && c >= b)
-				{
-					s = 2;
-					t = 10;
-				}
-				else if (a <= b && c > b)
-				{
-					s = 2;
-					t = 11;
-				}
-				else if (a == mMatrixSize && c > b)
-				{
-					s = 2;
-					t = 12;
-				}
-				else if (a < b && c == mMatrixSize)
-				{
-					s = 3;
-					t = 13;
-				}
-				else if (a == mMatrixSize && b == mMatrixSize && c == mMatrixSize)
-				{
-					s = -1;
-					t = 14;
-				}
-				else
-				{
-					s = -1;
-					t = 15;
-				}
-
-				slopes[orientation][index] = s;
-				slopes2[orientation][index] = t;
-			}
-		}
+		ArrayList<Symbol> symbols = new ArrayList<>(mTemplates.getSymbols());
+		symbols.addAll(aSymbols);
 
-		aSymbol.mSlopes = slopes;
-		aSymbol.mSlopes2 = slopes2;
-		aSymbol.mSlopesX = slopesX;
+		mTemplates = new TemplateMatrix(symbols);
 	}
 
 
-	private void extractCurvature(Symbol aSymbol)
+	public synchronized void reset()
 	{
-		double[][] contour = aSymbol.mContour;
-		int[][] slopes = aSymbol.mSlopes;
+		mTemplates = new TemplateMatrix(new ArrayList<>());
+	}
 
-		aSymbol.mCurvature = new Polygon[8][];
-		aSymbol.mCurvatureSlopes = new int[8][];
 
-		ArrayList<Polygon> polygons = new ArrayList<>();
-		ArrayList<Integer> polygonSlopes = new ArrayList<>();
+	/**
+	 * Resamples the symbol into the matrix buffer of the extractor of the calling thread. The matrix is overwritten by
+	 * the next extraction on the same thread and must be copied if the symbol is kept. The borders are stored in the
+	 * Insets of the symbol if it has one.
+	 */
+	private void extractBitmap(Bitmap aBitmap, Symbol aSymbol)
+	{
+		TextBox box = aSymbol.mTextBox;
 
-		for (int orientation = 0; orientation < 8; orientation++)
+		if (aSymbol.mBorders == null)
 		{
-			boolean hor = (orientation == 2 || orientation == 3 || orientation == 6 || orientation == 7);
-			int tx = 0;
-
-			int fromX = 0;
-			int fromY = 0;
-			boolean first = true;
-
-			for (int i = 0; i < mMatrixSize; i++)
-			{
-				if (first)
-				{
-					tx = (int)contour[orientation][i];
-				}
-				else
-				{
-					for (int startSlope = slopes[orientation][i]; i < mMatrixSize; i++)
-					{
-						if (contour[orientation][i] == -1)
-						{
-							break;
-						}
-						if (startSlope != slopes[orientation][i] && slopes[orientation][i] != 0)
-						{
-							break;
-						}
-						tx = (int)contour[orientation][i];
-					}
-				}
-
-				if (tx == -1 || tx == mMatrixSize)
-				{
-					first = true;
-					continue;
-				}
-
-				int toX, toY;
-
-				if (hor)
-				{
-					toX = i - (first ? 0 : 1);
-					toY = tx;
-				}
-				else
-				{
-					toX = tx;
-					toY = i - (first ? 0 : 1);
-				}
-
-//				if (!first && tx > -1 && tx < MATRIX_SIZE && (fromX != toX || Math.abs(fromY - toY) > 0) && (fromY != toY || Math.abs(fromX - toX) > 0))
-				if (!first && tx > -1 && tx < mMatrixSize && (fromX != toX || fromY != toY))
-				{
-					int x1 = fromX + (orientation % 4) * mMatrixSize;
-					int y1 = fromY + (orientation / 4) * mMatrixSize;
-					int x2 = toX + (orientation % 4) * mMatrixSize;
-					int y2 = toY + (orientation / 4) * mMatrixSize;
-
-					int slope;
+			aSymbol.mBorders = new Insets(0, 0, 0, 0);
+		}
 
-					if (orientation == 0 || orientation == 4)
-					{
-						if (x2 < x1)
-						{
-							slope = 1;
-						}
-						else
-						{
-							slope = -1;
-						}
-					}
-					else if (orientation == 1 || orientation == 5)
-					{
-						if (x2 < x1)
-						{
-							slope = -1;
-						}
-						else
-						{
-							slope = 1;
-						}
-					}
-					else if (orientation == 2 || orientation == 6)
-					{
-						if (y2 < y1)
-						{
-							slope = -1;
-						}
-						else
-						{
-							slope = 1;
-						}
-					}
-					else
-					{
-						if (y2 < y1)
-						{
-							slope = 1;
-						}
-						else
-						{
-							slope = -1;
-						}
-					}
+		Insets borders = aBitmap.getBorders(box.x, box.y, box.width, box.height, aSymbol.mBorders);
 
-					Polygon polyA = new Polygon(new int[]
-					{
-						fromX, toX, fromX
-					}, new int[]
-					{
-						fromY, toY, toY
-					}, 3);
-					Polygon polyB = new Polygon(new int[]
-					{
-						fromX, toX, toX
-					}, new int[]
-					{
-						fromY, toY, fromY
-					}, 3);
+		boolean[] matrix = mExtractor.get().getMatrix();
 
-					polygons.add(slope == 1 ? polyA : polyB);
-					polygonSlopes.add(hor ? (slope == 1 ? -1 : 1) : slope);
-				}
+		aBitmap.resample(box.x + borders.left, box.y + borders.top, box.width - borders.left - borders.right + 1, box.height - borders.top - borders.bottom + 1, mMatrixSize, WHITE_THRESHOLD, matrix);
 
-				if (orientation == 0 && aSymbol.mTextBox.x == 476 && aSymbol.mTextBox.y == 2405)
-				{
-					System.out.println(fromX+","+fromY+" -> "+toX+","+toY);
-				}
+		aSymbol.setMatrix(matrix, mMatrixSize);
+	}
 
-				fromX = toX;
-				fromY = toY;
 
-				first = false;
+	/**
+	 * Returns the part of the Bitmap inside the TextBox excluding the borders.
+	 */
+	static BufferedImage getRegion(Bitmap aBitmap, TextBox aTextBox, Insets aBorders)
+	{
+		return aBitmap.getRegion(aTextBox.x + aBorders.left, aTextBox.y + aBorders.top, aTextBox.x + aTextBox.width - aBorders.right + 1, aTextBox.y + aTextBox.height - aBorders.bottom + 1);
+	}
 
-				if (i < mMatrixSize && contour[orientation][i] == -1)
-				{
-					first = true;
-				}
-			}
 
-			aSymbol.mCurvature[orientation] = polygons.toArray(new Polygon[polygons.size()]);
-			aSymbol.mCurvatureSlopes[orientation] = new int[polygonSlopes.size()];
-			for (int i = 0; i < polygonSlopes.size(); i++)
-			{
-				aSymbol.mCurvatureSlopes[orientation][i] = polygonSlopes.get(i);
-			}
+	private void extractTemplateDistance(Symbol aSymbol)
+	{
+		aSymbol.mClosestPixel = new int[mMatrixSize][mMatrixSize];
 
-			polygons.clear();
-			polygonSlopes.clear();
-		}
+		DistanceTransform.transform(aSymbol.getMatrix(), mMatrixSize, mDistanceMetric, aSymbol.mClosestPixel);
 	}
 
 
-	private void generateCurvatureBitmap(Symbol aSymbol, TextBox aTextBox)
+	/**
+	 * Render the contour and curvature features of a symbol for debugging.
+	 */
+	BufferedImage generateCurvatureBitmap(Symbol aSymbol, TextBox aTextBox)
 	{
 		int scale = 8;
 		int padLeft = 40;
@@ -724,80 +470,14 @@ class CurvatureClassifier
 
 			for (int i = 0; i < mMatrixSize; i++)
 			{
-				String text = aSymbol.mSlopesX[orientation][i]+" "+slopes[orientation][i]+" "+aSymbol.mSlopes2[orientation][i]+" "+(int)aSymbol.mContour[orientation][i];
+				String text = FeatureExtractor.getSlopeText(aSymbol.mContour[orientation], i, mMatrixSize)+" "+slopes[orientation][i]+" "+aSymbol.mSlopes2[orientation][i]+" "+(int)aSymbol.mContour[orientation][i];
 				int tx = padX + x * (padX + size) - 30;
 				int ty = padY + y * (padY + size) + i * scale + scale;
 				g.drawString(text, tx, ty);
 			}
 		}
 
-		aTextBox.setSymbolBitmap(output);
-	}
-
-
-	private void extractCurvatureVector(Symbol aSymbol)
-	{
-		Polygon[][] polygons = aSymbol.mCurvature;
-
-		double[][][] fill = aSymbol.mCurvatureVector = new double[8][2][3];
-
-		for (int orientation = 0; orientation < 8; orientation++)
-		{
-			boolean hor = orientation == 0 || orientation == 1 || orientation == 4 || orientation == 5;
-
-			for (int i = 0; i < polygons[orientation].length; i++)
-			{
-				Polygon p = polygons[orientation][i];
-
-				int type = aSymbol.mCurvatureSlopes[orientation][i] == -1 ? 0 : 1;
-
-				double area1, area2, area3;
-
-				int v0 = (int)(0 * mOneThirdMatrix);
-				int v1 = (int)(1 * mOneThirdMatrix);
-				int v2 = (int)(2 * mOneThirdMatrix);
-				int v3 = (int)(3 * mOneThirdMatrix);
-
-				if (hor)
-				{
-					area1 = intersect(p, 0, v0, mMatrixSize, v1);
-					area2 = intersect(p, 0, v1, mMatrixSize, v2);
-					area3 = intersect(p, 0, v2, mMatrixSize, v3);
-				}
-				else
-				{
-					area1 = intersect(p, v0, 0, v1, mMatrixSize);
-					area2 = intersect(p, v1, 0, v2, mMatrixSize);
-					area3 = intersect(p, v2, 0, v3, mMatrixSize);
-				}
-
-				fill[orientation][type][0] += area1;
-				fill[orientation][type][1] += area2;
-				fill[orientation][type][2] += area3;
-			}
-		}
-	}
-
-
-	private int intersect(Polygon p, int rx0, int ry0, int rx1, int ry1)
-	{
-		int n = 0;
-
-		if (rx0 > rx1){int t = rx1; rx1 = rx0; rx0 = t;}
-		if (ry0 > ry1){int t = ry1; ry1 = ry0; ry0 = t;}
-
-		for (double y = ry0; y < ry1; y++)
-		{
-			for (double x = rx0; x < rx1; x++)
-			{
-				if (p.contains(x, y))
-				{
-					n++;
-				}
-			}
-		}
-
-		return n;
+		return output;
 	}
 
 
@@ -829,42 +509,158 @@ class CurvatureClassifier
 
 		extractBitmap(aBitmap, symbol);
 
-		if (symbol.getBitmap().getRectFillFactor(0, 0, mMatrixSize, mMatrixSize) == 0)
+		if (symbol.isBlank())
 		{
 			return null;
 		}
 
-		extractContour(symbol);
-		extractSlopes(symbol);
-		extractCurvature(symbol);
-		extractCurvatureVector(symbol);
-		extractTemplateDistance(symbol);
+		symbol.setMatrix(symbol.getMatrix().clone(), mMatrixSize);
 
-		mSymbols.add(symbol);
+		extractFeatures(symbol);
 
 		return symbol;
 	}
 
 
-	public Result classifySymbol(Page aPage, TextBox aTextBox, Resolver aResolver)
+	/**
+	 * Extract the features of the symbol inside the TextBox. The returned Symbol holds all state of a classification
+	 * making it safe to classify symbols from several threads concurrently.
+	 */
+	public Symbol extractSymbol(Page aPage, TextBox aTextBox)
 	{
-		mPage = aPage;
+		Symbol symbol = extractMatrix(aPage, aTextBox, true);
+		extractFeatures(symbol);
 
-		Symbol symbol = new Symbol(aTextBox);
+		return symbol;
+	}
+
+
+	/**
+	 * Resample the symbol inside the TextBox without extracting any features.
+	 *
+	 * @param aRetain
+	 *   true if the symbol is kept after the next extraction on the calling thread, otherwise the returned symbol and
+	 *   its matrix are buffers of the thread
+	 */
+	Symbol extractMatrix(Page aPage, TextBox aTextBox, boolean aRetain)
+	{
+		Symbol symbol = aRetain ? new Symbol(aTextBox) : mExtractor.get().getSymbol(aTextBox);
 		extractBitmap(aPage.getBitmap(), symbol);
-		extractContour(symbol);
-		extractSlopes(symbol);
-		extractCurvature(symbol);
-		extractCurvatureVector(symbol);
-		extractTemplateDistance(symbol);
 
-		generateCurvatureBitmap(symbol, aTextBox);
+		if (aRetain)
+		{
+			symbol.setMatrix(symbol.getMatrix().clone(), mMatrixSize);
+		}
+
+		return symbol;
+	}
+
+
+	/**
+	 * Extract the features of a symbol returned by the extractMatrix method.
+	 */
+	void extractFeatures(Symbol aSymbol)
+	{
+		FeatureExtractor extractor = mExtractor.get();
+		int[] features = extractor.getFeatures();
+
+		extractor.extract(aSymbol.getMatrix(), features);
+		extractor.copyTo(aSymbol, features);
+
+		extractTemplateDistance(aSymbol);
+	}
+
+
+	public Result classifySymbol(Page aPage, TextBox aTextBox, Resolver aResolver)
+	{
+		return classifySymbol(aPage, aTextBox, extractSymbol(aPage, aTextBox), aResolver);
+	}
+
+
+	/**
+	 * Find the learned symbol best matching a symbol returned by the extractSymbol method.
+	 *
+	 * @return the best match or null if the resolver accepted no learned symbol
+	 */
+	public Result classifySymbol(Page aPage, TextBox aTextBox, Symbol aSymbol, Resolver aResolver)
+	{
+		ArrayList<Result> results = classifySymbol(aPage, aTextBox, aSymbol, aResolver, 1);
+
+		return results.isEmpty() ? null : results.get(0);
+	}
+
+
+	/**
+	 * Find the learned symbols best matching a symbol returned by the extractSymbol method. The score of each Result
+	 * is the distance between the curvature vectors where a lower score is a better match.
+	 *
+	 * @param aCandidates
+	 *   maximum number of results, at least one
+	 * @return the results ordered by score, best first
+	 */
+	public ArrayList<Result> classifySymbol(Page aPage, TextBox aTextBox, Symbol aSymbol, Resolver aResolver, int aCandidates)
+	{
+		if (aCandidates < 1)
+		{
+			throw new IllegalArgumentException("Candidate count must be at least one: " + aCandidates);
+		}
+
+		ArrayList<Result> results = new ArrayList<>();
+
+		classifySymbol(aPage, aTextBox, aSymbol, aResolver, aCandidates, null, results);
+
+		return results;
+	}
+
+
+	/**
+	 * Find the learned symbols best matching a symbol, looking up the result in the cache first. The features of the
+	 * symbol are only extracted when the result isn't cached. A cache hit allocates nothing. A miss creates a Result for
+	 * each candidate, since Results are kept by the TextBoxes and shared through the cache, and a copy of the key.
+	 *
+	 * @param aSymbol
+	 *   a symbol returned by the extractMatrix or extractSymbol method
+	 * @param aCache
+	 *   the cache or null
+	 * @param aOutput
+	 *   receives the results ordered by score, best first
+	 */
+	void classifySymbol(Page aPage, TextBox aTextBox, Symbol aSymbol, Resolver aResolver, int aCandidates, GlyphCache aCache, ArrayList<Result> aOutput)
+	{
+		FeatureExtractor extractor = mExtractor.get();
+		TemplateMatrix templates = mTemplates;
+		BitSet admission = aResolver.getAdmission(aPage, aTextBox, templates.getSymbols(), extractor.getAdmission());
+		GlyphCache.Key key = null;
+
+		if (aCache != null)
+		{
+			key = extractor.getCacheKey().set(aSymbol.getMatrix(), admission, aCandidates, templates);
+
+			if (aCache.get(key, aOutput))
+			{
+				return;
+			}
+		}
+
+		int[] features = extractor.getFeatures();
+
+		if (aSymbol.mCurvatureVector != null)
+		{
+			TemplateMatrix.getFeatures(aSymbol, features, 0);
+		}
+		else
+		{
+			extractor.extract(aSymbol.getMatrix(), features);
+		}
 
-		ArrayList<Result> results = classifySymbolByCurvature(symbol, aTextBox, aResolver);
+		int start = aOutput.size();
 
-		Collections.sort(results);
+		classifySymbolByCurvature(features, admission, templates, aCandidates, extractor, aOutput);
 
-		return results.get(0);
+		if (aCache != null)
+		{
+			aCache.put(key, aOutput.subList(start, aOutput.size()));
+		}
 	}
 
 
@@ -944,82 +740,31 @@ class CurvatureClassifier
 //	}
 
 
-	private int findClosestPixel(Symbol aSymbol, int x, int y)
+	/**
+	 * Find the learned symbols with the smallest sum of absolute differences between the curvature vectors. Symbols
+	 * not admitted by the resolver are ignored. The best match of the previous symbol classified on the same thread is
+	 * compared first since neighbouring symbols often share font and size.
+	 */
+	private void classifySymbolByCurvature(int[] aFeatures, BitSet aAdmission, TemplateMatrix aTemplates, int aCandidates, FeatureExtractor aExtractor, ArrayList<Result> aOutput)
 	{
-		Bitmap bitmap = aSymbol.getBitmap();
-
-		for (int s = 0; s < mMatrixSize; s++)
-		{
-			for (int i = -s; i <= s; i++)
-			{
-				if (bitmap.isBlack(x + i, y - s, false))
-				{
-					return s;
-				}
-				if (bitmap.isBlack(x + i, y + s, false))
-				{
-					return s;
-				}
-				if (bitmap.isBlack(x - s, y + i, false))
-				{
-					return s;
-				}
-				if (bitmap.isBlack(x + s, y + i, false))
-				{
-					return s;
-				}
-			}
-		}
-		return mMatrixSize;
-	}
+		ArrayList<Symbol> symbols = aTemplates.getSymbols();
 
+		int[] previousMatch = mPreviousMatch.get();
+		int[] indices = aExtractor.getCandidateIndices(aCandidates);
+		int[] scores = aExtractor.getCandidateScores(aCandidates);
 
-	private ArrayList<Result> classifySymbolByCurvature(Symbol aSymbol, TextBox aTextBox, Resolver aResolver)
-	{
-		ArrayList<Result> results = new ArrayList<>();
-
-		int[] points = new int[mSymbols.size()];
+		int count = aTemplates.findNearest(aFeatures, aAdmission, previousMatch[0], aCandidates, indices, scores);
 
-		for (int orientation = 0; orientation < 8; orientation++)
+		for (int i = 0; i < count; i++)
 		{
-			for (int zone = 0; zone < 3; zone++)
-			{
-				for (int type = 0; type < 2; type++)
-				{
-					for (int sym = 0; sym < mSymbols.size(); sym++)
-					{
-						Symbol cmpSymbol = mSymbols.get(sym);
-
-						if (!aResolver.acceptSymbol(mPage, aTextBox, cmpSymbol))
-						{
-							continue;
-						}
-
-						double s1 = cmpSymbol.mCurvatureVector[orientation][type][zone];
-						double s2 = aSymbol.mCurvatureVector[orientation][type][zone];
-
-						points[sym] += Math.abs(s1 - s2);
-					}
-				}
-			}
+			aOutput.add(new Result(scores[i], symbols.get(indices[i])));
 		}
 
-		Symbol cmpSymbol = null;
-		int smallest = Integer.MAX_VALUE;
-
-		for (int sym = 0; sym < mSymbols.size(); sym++)
+		if (count > 0)
 		{
-			if (points[sym] < smallest)
-			{
-				cmpSymbol = mSymbols.get(sym);
-				smallest = points[sym];
-			}
+			previousMatch[0] = indices[0];
 		}
 
-		Result result = new Result(0, cmpSymbol);
-
-		results.add(result);
-
 //		for (Symbol cmpSymbol : mSymbols)
 //		{
 //			if (!aResolver.acceptSymbol(mPage, aTextBox, cmpSymbol))
@@ -1049,7 +794,5 @@ class CurvatureClassifier
 //
 //			results.add(result);
 //		}
-
-		return results;
 	}
 }
@@ -0,0 +1,21 @@
+package org.terifan.ocr;
+
+
+/**
+ * The metric used when measuring the distance from each cell of a symbol matrix to the closest black cell.
+ */
+public enum DistanceMetric
+{
+	/**
+	 * Number of steps in any of the eight directions, max(|dx|, |dy|). This is the default metric.
+	 */
+	CHESSBOARD,
+	/**
+	 * The 3-4 chamfer approximation of the Euclidean distance, rounded to whole cells.
+	 */
+	CHAMFER,
+	/**
+	 * The exact Euclidean distance, rounded to whole cells.
+	 */
+	EUCLIDEAN
+}
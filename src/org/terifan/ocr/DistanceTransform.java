@@ -0,0 +1,200 @@
+package org.terifan.ocr;
+
+
+/**
+ * Computes the distance from every cell of a square matrix to the closest black cell in two passes over the matrix.
+ * Distances are limited to the matrix size, which is also the distance reported when the matrix has no black cells.
+ */
+final class DistanceTransform
+{
+	private DistanceTransform()
+	{
+	}
+
+
+	/**
+	 * @param aMatrix
+	 *   cells in row order where true is black
+	 * @param aOutput
+	 *   receives the distances, indexed [y][x]
+	 */
+	static void transform(boolean[] aMatrix, int aSize, DistanceMetric aMetric, int[][] aOutput)
+	{
+		switch (aMetric)
+		{
+			case CHESSBOARD:
+				chamfer(aMatrix, aSize, 1, 1, aOutput);
+				break;
+			case CHAMFER:
+				chamfer(aMatrix, aSize, 3, 4, aOutput);
+				break;
+			case EUCLIDEAN:
+				euclidean(aMatrix, aSize, aOutput);
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported metric: " + aMetric);
+		}
+	}
+
+
+	/**
+	 * Forward and backward raster scans propagating the distance with a fixed cost for orthogonal and diagonal steps.
+	 * The result is divided by the orthogonal cost and rounded.
+	 */
+	private static void chamfer(boolean[] aMatrix, int aSize, int aOrthogonal, int aDiagonal, int[][] aOutput)
+	{
+		int infinity = aOrthogonal * aSize;
+		int[] d = new int[aSize * aSize];
+
+		for (int y = 0, i = 0; y < aSize; y++)
+		{
+			for (int x = 0; x < aSize; x++, i++)
+			{
+				int v = aMatrix[i] ? 0 : infinity;
+
+				if (v != 0)
+				{
+					if (x > 0)
+					{
+						v = Math.min(v, d[i - 1] + aOrthogonal);
+					}
+					if (y > 0)
+					{
+						v = Math.min(v, d[i - aSize] + aOrthogonal);
+						if (x > 0)
+						{
+							v = Math.min(v, d[i - aSize - 1] + aDiagonal);
+						}
+						if (x < aSize - 1)
+						{
+							v = Math.min(v, d[i - aSize + 1] + aDiagonal);
+						}
+					}
+				}
+
+				d[i] = v;
+			}
+		}
+
+		for (int y = aSize, i = aSize * aSize; --y >= 0;)
+		{
+			for (int x = aSize; --x >= 0;)
+			{
+				int v = d[--i];
+
+				if (v != 0)
+				{
+					if (x < aSize - 1)
+					{
+						v = Math.min(v, d[i + 1] + aOrthogonal);
+					}
+					if (y < aSize - 1)
+					{
+						v = Math.min(v, d[i + aSize] + aOrthogonal);
+						if (x < aSize - 1)
+						{
+							v = Math.min(v, d[i + aSize + 1] + aDiagonal);
+						}
+						if (x > 0)
+						{
+							v = Math.min(v, d[i + aSize - 1] + aDiagonal);
+						}
+					}
+				}
+
+				d[i] = v;
+				aOutput[y][x] = Math.min(aSize, (v + aOrthogonal / 2) / aOrthogonal);
+			}
+		}
+	}
+
+
+	/**
+	 * The exact Euclidean distance transform of Felzenszwalb and Huttenlocher: a one dimensional transform of the squared
+	 * distance along each column followed by one along each row.
+	 */
+	private static void euclidean(boolean[] aMatrix, int aSize, int[][] aOutput)
+	{
+		long infinity = 4L * aSize * aSize;
+		long[] d = new long[aSize * aSize];
+		long[] f = new long[aSize];
+		long[] g = new long[aSize];
+		int[] v = new int[aSize];
+		double[] z = new double[aSize + 1];
+
+		for (int x = 0; x < aSize; x++)
+		{
+			for (int y = 0; y < aSize; y++)
+			{
+				f[y] = aMatrix[y * aSize + x] ? 0 : infinity;
+			}
+
+			transform1D(f, aSize, g, v, z);
+
+			for (int y = 0; y < aSize; y++)
+			{
+				d[y * aSize + x] = g[y];
+			}
+		}
+
+		for (int y = 0; y < aSize; y++)
+		{
+			System.arraycopy(d, y * aSize, f, 0, aSize);
+
+			transform1D(f, aSize, g, v, z);
+
+			for (int x = 0; x < aSize; x++)
+			{
+				aOutput[y][x] = g[x] >= infinity ? aSize : (int)Math.min(aSize, Math.round(Math.sqrt(g[x])));
+			}
+		}
+	}
+
+
+	/**
+	 * Computes g[q] = min over p of (q - p)^2 + f[p] as the lower envelope of the parabolas rooted at each p.
+	 */
+	private static void transform1D(long[] f, int n, long[] g, int[] v, double[] z)
+	{
+		int k = 0;
+		v[0] = 0;
+		z[0] = Double.NEGATIVE_INFINITY;
+		z[1] = Double.POSITIVE_INFINITY;
+
+		for (int q = 1; q < n; q++)
+		{
+			double s = intersection(f, v[k], q);
+
+			while (s <= z[k])
+			{
+				k--;
+				s = intersection(f, v[k], q);
+			}
+
+			k++;
+			v[k] = q;
+			z[k] = s;
+			z[k + 1] = Double.POSITIVE_INFINITY;
+		}
+
+		k = 0;
+		for (int q = 0; q < n; q++)
+		{
+			while (z[k + 1] < q)
+			{
+				k++;
+			}
+			long dq = q - v[k];
+			g[q] = dq * dq + f[v[k]];
+		}
+	}
+
+
+	/**
+	 * @return the position where the parabolas rooted at p and q intersect
+	 */
+	private static double intersection(long[] f, int p, int q)
+	{
+		return ((f[q] + (long)q * q) - (f[p] + (long)p * p)) / (2.0 * (q - p));
+	}
+}
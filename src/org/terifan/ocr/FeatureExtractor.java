@@ -0,0 +1,619 @@
+package org.terifan.ocr;
+
+import java.awt.Insets;
+import java.util.BitSet;
+
+
+/**
+ * Extracts the curvature vector of a resampled symbol. All intermediate features are kept in arrays allocated once,
+ * so an instance must only be used by one thread at a time. The CurvatureClassifier keeps one instance per thread and
+ * also uses it for the other per-glyph buffers of a classification, the symbol, admission set and cache key.
+ *
+ * <p>Features are stored per orientation in blocks of matrix size values. Orientations 0-3 scan the full matrix from
+ * the left, right, top and bottom edge and orientations 4-7 scan the same directions starting at the middle.</p>
+ */
+final class FeatureExtractor
+{
+	private final int mMatrixSize;
+	private final int[] mZones;
+	private final int[] mContour;
+	private final int[] mSlopes;
+	private final int[] mSlopeTypes;
+	private final int[] mTriangles;
+	private final int[] mTriangleSlopes;
+	private final int[] mTriangleCounts;
+	private final int[] mFeatures;
+	private final boolean[] mMatrix;
+	private final Symbol mSymbol;
+	private final BitSet mAdmission;
+	private final GlyphCache.Key mCacheKey;
+	private int[] mCandidateIndices;
+	private int[] mCandidateScores;
+
+
+	FeatureExtractor(int aMatrixSize)
+	{
+		mMatrixSize = aMatrixSize;
+		mContour = new int[8 * aMatrixSize];
+		mSlopes = new int[8 * aMatrixSize];
+		mSlopeTypes = new int[8 * aMatrixSize];
+		mTriangles = new int[8 * 6 * aMatrixSize];
+		mTriangleSlopes = new int[8 * aMatrixSize];
+		mTriangleCounts = new int[8];
+		mFeatures = new int[TemplateMatrix.FEATURES];
+		mMatrix = new boolean[aMatrixSize * aMatrixSize];
+		mSymbol = new Symbol(null);
+		mSymbol.mBorders = new Insets(0, 0, 0, 0);
+		mAdmission = new BitSet();
+		mCacheKey = new GlyphCache.Key(aMatrixSize * aMatrixSize);
+		mCandidateIndices = new int[1];
+		mCandidateScores = new int[1];
+
+		double oneThirdMatrix = aMatrixSize / 3.0;
+
+		mZones = new int[aMatrixSize];
+		for (int i = 0; i < aMatrixSize; i++)
+		{
+			mZones[i] = -1;
+			for (int zone = 0; zone < 3; zone++)
+			{
+				if (i >= (int)(zone * oneThirdMatrix) && i < (int)((zone + 1) * oneThirdMatrix))
+				{
+					mZones[i] = zone;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * @return a buffer for a curvature vector owned by this instance
+	 */
+	int[] getFeatures()
+	{
+		return mFeatures;
+	}
+
+
+	/**
+	 * @return a buffer for a resampled symbol owned by this instance
+	 */
+	boolean[] getMatrix()
+	{
+		return mMatrix;
+	}
+
+
+	/**
+	 * @return a symbol owned by this instance for classifying a TextBox without keeping the symbol
+	 */
+	Symbol getSymbol(TextBox aTextBox)
+	{
+		mSymbol.mTextBox = aTextBox;
+		return mSymbol;
+	}
+
+
+	/**
+	 * @return a buffer for the symbols admitted by a Resolver owned by this instance
+	 */
+	BitSet getAdmission()
+	{
+		return mAdmission;
+	}
+
+
+	/**
+	 * @return a glyph cache lookup key owned by this instance
+	 */
+	GlyphCache.Key getCacheKey()
+	{
+		return mCacheKey;
+	}
+
+
+	/**
+	 * @return a buffer for candidate indices owned by this instance with room for at least aCount values
+	 */
+	int[] getCandidateIndices(int aCount)
+	{
+		if (mCandidateIndices.length < aCount)
+		{
+			mCandidateIndices = new int[aCount];
+		}
+		return mCandidateIndices;
+	}
+
+
+	/**
+	 * @return a buffer for candidate scores owned by this instance with room for at least aCount values
+	 */
+	int[] getCandidateScores(int aCount)
+	{
+		if (mCandidateScores.length < aCount)
+		{
+			mCandidateScores = new int[aCount];
+		}
+		return mCandidateScores;
+	}
+
+
+	/**
+	 * Extracts the curvature vector of a symbol without allocating any memory.
+	 *
+	 * @param aMatrix
+	 *   the resampled symbol, cells in row order where true is black
+	 * @param aFeatures
+	 *   receives the curvature vector in the order used by the TemplateMatrix
+	 */
+	void extract(boolean[] aMatrix, int[] aFeatures)
+	{
+		extractContour(aMatrix);
+		extractSlopes();
+		extractCurvature();
+		extractCurvatureVector(aFeatures);
+	}
+
+
+	/**
+	 * Copies the features of the last extraction to the symbol.
+	 */
+	void copyTo(Symbol aSymbol, int[] aFeatures)
+	{
+		int n = mMatrixSize;
+
+		aSymbol.mContour = new double[8][n];
+		aSymbol.mSlopes = new int[8][n];
+		aSymbol.mSlopes2 = new int[8][n];
+		aSymbol.mCurvature = new int[8][];
+		aSymbol.mCurvatureSlopes = new int[8][];
+		aSymbol.mCurvatureVector = new double[8][2][3];
+
+		for (int orientation = 0; orientation < 8; orientation++)
+		{
+			for (int i = 0; i < n; i++)
+			{
+				aSymbol.mContour[orientation][i] = mContour[orientation * n + i];
+			}
+
+			System.arraycopy(mSlopes, orientation * n, aSymbol.mSlopes[orientation], 0, n);
+			System.arraycopy(mSlopeTypes, orientation * n, aSymbol.mSlopes2[orientation], 0, n);
+
+			int count = mTriangleCounts[orientation];
+
+			aSymbol.mCurvature[orientation] = new int[6 * count];
+			aSymbol.mCurvatureSlopes[orientation] = new int[count];
+
+			System.arraycopy(mTriangles, orientation * 6 * n, aSymbol.mCurvature[orientation], 0, 6 * count);
+			System.arraycopy(mTriangleSlopes, orientation * n, aSymbol.mCurvatureSlopes[orientation], 0, count);
+
+			for (int type = 0; type < 2; type++)
+			{
+				for (int zone = 0; zone < 3; zone++)
+				{
+					aSymbol.mCurvatureVector[orientation][type][zone] = aFeatures[(2 * orientation + type) * 3 + zone];
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Returns the contour positions before, at and after an index as shown in debug images.
+	 */
+	static String getSlopeText(double[] aContour, int aIndex, int aMatrixSize)
+	{
+		int b =                                (int)(aContour[aIndex    ]);
+		int a = aIndex == 0               ? b : (int)(aContour[aIndex - 1]);
+		int c = aIndex == aMatrixSize - 1 ? b : (int)(aContour[aIndex + 1]);
+
+		if (a == -1) a = aMatrixSize;
+		if (b == -1) b = aMatrixSize;
+		if (c == -1) c = aMatrixSize;
+
+		return a + ":" + b + ":" + c;
+	}
+
+
+	/**
+	 * Finds the distance from each edge of the matrix to the first black cell in every row or column. Rows without black
+	 * cells get the matrix size when scanning forward and -1 when scanning backward.
+	 */
+	private void extractContour(boolean[] aMatrix)
+	{
+		int n = mMatrixSize;
+		int[] contour = mContour;
+
+		for (int ori = 0; ori < 2; ori++)
+		{
+			int start = n * ori / 2;
+
+			for (int y = 0; y < n; y++)
+			{
+				int x = start;
+				while (x < n && !aMatrix[y * n + x])
+				{
+					x++;
+				}
+				contour[(4 * ori + 0) * n + y] = x;
+			}
+
+			for (int y = 0; y < n; y++)
+			{
+				int x = n - 1 - start;
+				while (x >= 0 && !aMatrix[y * n + x])
+				{
+					x--;
+				}
+				contour[(4 * ori + 1) * n + y] = x;
+			}
+
+			for (int x = 0; x < n; x++)
+			{
+				int y = start;
+				while (y < n && !aMatrix[y * n + x])
+				{
+					y++;
+				}
+				contour[(4 * ori + 2) * n + x] = y;
+			}
+
+			for (int x = 0; x < n; x++)
+			{
+				int y = n - 1 - start;
+				while (y >= 0 && !aMatrix[y * n + x])
+				{
+					y--;
+				}
+				contour[(4 * ori + 3) * n + x] = y;
+			}
+		}
+	}
+
+
+	private void extractSlopes()
+	{
+		int n = mMatrixSize;
+		int[] contour = mContour;
+
+		for (int orientation = 0; orientation < 8; orientation++)
+		{
+			int offset = orientation * n;
+
+			for (int index = 0; index < n; index++)
+			{
+				int b =                      contour[offset + index    ];
+				int a = index == 0     ? b : contour[offset + index - 1];
+				int c = index == n - 1 ? b : contour[offset + index + 1];
+
+				if (a == -1) a = n;
+				if (b == -1) b = n;
+				if (c == -1) c = n;
+
+				int s;
+				int t;
+
+				if (b == n)
+				{
+					s = -1;
+					t = 0;
+				}
+				else if (a == b && b == c)
+				{
+					s = 0;
+					t = 1;
+				}
+				else if (a == n && b == c)
+				{
+					s = 0;
+					t = 2;
+				}
+				else if (a == b && c == n)
+				{
+					s = 0;
+					t = 3;
+				}
+				else if (a < b && c < b)
+				{
+					s = 2;
+					t = 4;
+				}
+				else if (a > b && c > b)
+				{
+					s = 0;
+					t = 5;
+				}
+				else if (a > b && c <= b)
+				{
+					s = 1;
+					t = 6;
+				}
+				else if (a >= b && c < b)
+				{
+					s = 1;
+					t = 7;
+				}
+				else if (a == n && c < b)
+				{
+					s = 1;
+					t = 8;
+				}
+				else if (a > b && c == n)
+				{
+					s = 1;
+					t = 9;
+				}
+				else if (a < b && c >= b)
+				{
+					s = 2;
+					t = 10;
+				}
+				else if (a <= b && c > b)
+				{
+					s = 2;
+					t = 11;
+				}
+				else if (a == n && c > b)
+				{
+					s = 2;
+					t = 12;
+				}
+				else if (a < b && c == n)
+				{
+					s = 3;
+					t = 13;
+				}
+				else if (a == n && b == n && c == n)
+				{
+					s = -1;
+					t = 14;
+				}
+				else
+				{
+					s = -1;
+					t = 15;
+				}
+
+				mSlopes[offset + index] = s;
+				mSlopeTypes[offset + index] = t;
+			}
+		}
+	}
+
+
+	/**
+	 * Follows the contour of each orientation and creates a right triangle under every segment with a constant slope.
+	 * Triangles are stored as six ints: x0, y0, x1, y1, x2, y2.
+	 */
+	private void extractCurvature()
+	{
+		int n = mMatrixSize;
+		int[] contour = mContour;
+		int[] slopes = mSlopes;
+
+		for (int orientation = 0; orientation < 8; orientation++)
+		{
+			boolean hor = (orientation == 2 || orientation == 3 || orientation == 6 || orientation == 7);
+			int offset = orientation * n;
+			int count = 0;
+			int tx = 0;
+
+			int fromX = 0;
+			int fromY = 0;
+			boolean first = true;
+
+			for (int i = 0; i < n; i++)
+			{
+				if (first)
+				{
+					tx = contour[offset + i];
+				}
+				else
+				{
+					for (int startSlope = slopes[offset + i]; i < n; i++)
+					{
+						if (contour[offset + i] == -1)
+						{
+							break;
+						}
+						if (startSlope != slopes[offset + i] && slopes[offset + i] != 0)
+						{
+							break;
+						}
+						tx = contour[offset + i];
+					}
+				}
+
+				if (tx == -1 || tx == n)
+				{
+					first = true;
+					continue;
+				}
+
+				int toX, toY;
+
+				if (hor)
+				{
+					toX = i - (first ? 0 : 1);
+					toY = tx;
+				}
+				else
+				{
+					toX = tx;
+					toY = i - (first ? 0 : 1);
+				}
+
+				if (!first && tx > -1 && tx < n && (fromX != toX || fromY != toY))
+				{
+					int slope;
+
+					if (orientation == 0 || orientation == 4)
+					{
+						slope = toX < fromX ? 1 : -1;
+					}
+					else if (orientation == 1 || orientation == 5)
+					{
+						slope = toX < fromX ? -1 : 1;
+					}
+					else if (orientation == 2 || orientation == 6)
+					{
+						slope = toY < fromY ? -1 : 1;
+					}
+					else
+					{
+						slope = toY < fromY ? 1 : -1;
+					}
+
+					int j = 6 * (offset + count);
+					mTriangles[j + 0] = fromX;
+					mTriangles[j + 1] = fromY;
+					mTriangles[j + 2] = toX;
+					mTriangles[j + 3] = toY;
+					mTriangles[j + 4] = slope == 1 ? fromX : toX;
+					mTriangles[j + 5] = slope == 1 ? toY : fromY;
+					mTriangleSlopes[offset + count] = hor ? (slope == 1 ? -1 : 1) : slope;
+					count++;
+				}
+
+				fromX = toX;
+				fromY = toY;
+
+				first = false;
+
+				if (i < n && contour[offset + i] == -1)
+				{
+					first = true;
+				}
+			}
+
+			mTriangleCounts[orientation] = count;
+		}
+	}
+
+
+	/**
+	 * Count the matrix points inside each curvature triangle and accumulate them per zone. Each point is assigned to
+	 * the zone containing it, visiting only the points of the triangle's bounding box.
+	 */
+	private void extractCurvatureVector(int[] aFeatures)
+	{
+		int n = mMatrixSize;
+		int[] t = mTriangles;
+
+		for (int i = 0; i < TemplateMatrix.FEATURES; i++)
+		{
+			aFeatures[i] = 0;
+		}
+
+		for (int orientation = 0; orientation < 8; orientation++)
+		{
+			boolean hor = orientation == 0 || orientation == 1 || orientation == 4 || orientation == 5;
+
+			for (int i = orientation * n, end = i + mTriangleCounts[orientation]; i < end; i++)
+			{
+				int j = 6 * i;
+				int area = (2 * orientation + (mTriangleSlopes[i] == -1 ? 0 : 1)) * 3;
+
+				int minX = Math.max(0, Math.min(t[j], Math.min(t[j + 2], t[j + 4])));
+				int minY = Math.max(0, Math.min(t[j + 1], Math.min(t[j + 3], t[j + 5])));
+				int maxX = Math.min(n, Math.max(t[j], Math.max(t[j + 2], t[j + 4])));
+				int maxY = Math.min(n, Math.max(t[j + 1], Math.max(t[j + 3], t[j + 5])));
+
+				for (int y = minY; y < maxY; y++)
+				{
+					for (int x = minX; x < maxX; x++)
+					{
+						int zone = mZones[hor ? y : x];
+
+						if (zone != -1 && contains(t, j, x, y))
+						{
+							aFeatures[area + zone]++;
+						}
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Tests if a point is inside a triangle using the same crossing rules as java.awt.Polygon.contains. The point must
+	 * be inside the half open bounding box of the triangle.
+	 */
+	private static boolean contains(int[] aTriangle, int aOffset, int x, int y)
+	{
+		int hits = 0;
+		int lastx = aTriangle[aOffset + 4];
+		int lasty = aTriangle[aOffset + 5];
+
+		for (int i = 0; i < 6; i += 2)
+		{
+			int curx = aTriangle[aOffset + i];
+			int cury = aTriangle[aOffset + i + 1];
+			int prevx = lastx;
+			int prevy = lasty;
+			lastx = curx;
+			lasty = cury;
+
+			if (cury == prevy)
+			{
+				continue;
+			}
+
+			int leftx;
+			if (curx < prevx)
+			{
+				if (x >= prevx)
+				{
+					continue;
+				}
+				leftx = curx;
+			}
+			else
+			{
+				if (x >= curx)
+				{
+					continue;
+				}
+				leftx = prevx;
+			}
+
+			double test1, test2;
+			if (cury < prevy)
+			{
+				if (y < cury || y >= prevy)
+				{
+					continue;
+				}
+				if (x < leftx)
+				{
+					hits++;
+					continue;
+				}
+				test1 = x - curx;
+				test2 = y - cury;
+			}
+			else
+			{
+				if (y < prevy || y >= cury)
+				{
+					continue;
+				}
+				if (x < leftx)
+				{
+					hits++;
+					continue;
+				}
+				test1 = x - prevx;
+				test2 = y - prevy;
+			}
+
+			if (test1 < (test2 / (prevy - cury) * (prevx - curx)))
+			{
+				hits++;
+			}
+		}
+
+		return (hits & 1) != 0;
+	}
+}
@@ -0,0 +1,339 @@
+package org.terifan.ocr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A bounded cache of classification results. Symbols are classified from their resampled matrix alone, so the result
+ * of a symbol is reused for any later symbol with an identical matrix, classified against the same learned symbols
+ * and admission. The cache is thread-safe. It's split by key hash into segments locked independently, so threads
+ * scanning concurrently rarely wait for each other, and the least recently used result of a segment is evicted when the
+ * segment is full.
+ */
+public class GlyphCache
+{
+	public final static int DEFAULT_CAPACITY = 4096;
+	private final static int MAX_SEGMENT_COUNT = 16;
+
+	private final int mCapacity;
+	private final Segment[] mSegments;
+
+
+	public GlyphCache()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+
+	public GlyphCache(int aCapacity)
+	{
+		if (aCapacity < 1)
+		{
+			throw new IllegalArgumentException("Capacity must be at least one: " + aCapacity);
+		}
+
+		int segmentCount = Integer.highestOneBit(Math.min(aCapacity, MAX_SEGMENT_COUNT));
+
+		mCapacity = aCapacity;
+		mSegments = new Segment[segmentCount];
+
+		for (int i = 0; i < segmentCount; i++)
+		{
+			mSegments[i] = new Segment(aCapacity / segmentCount + (i < aCapacity % segmentCount ? 1 : 0));
+		}
+	}
+
+
+	/**
+	 * Adds the cached results to the output list. The Result instances are shared by all lookups of the key.
+	 *
+	 * @param aKey
+	 *   a lookup key, it isn't retained and may be reused
+	 * @return false if not found
+	 */
+	boolean get(Key aKey, ArrayList<Result> aOutput)
+	{
+		Segment segment = getSegment(aKey);
+		Result[] results;
+
+		synchronized (segment)
+		{
+			results = segment.get(aKey);
+
+			if (results == null)
+			{
+				segment.mMissCount++;
+				return false;
+			}
+
+			segment.mHitCount++;
+		}
+
+		for (Result result : results)
+		{
+			aOutput.add(result);
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * @param aKey
+	 *   a lookup key, a copy is stored
+	 */
+	void put(Key aKey, List<Result> aResults)
+	{
+		Key key = aKey.copy();
+		Result[] results = aResults.toArray(new Result[aResults.size()]);
+		Segment segment = getSegment(key);
+
+		synchronized (segment)
+		{
+			segment.put(key, results);
+		}
+	}
+
+
+	private Segment getSegment(Key aKey)
+	{
+		int hash = aKey.hashCode();
+
+		return mSegments[(hash ^ (hash >>> 16)) & (mSegments.length - 1)];
+	}
+
+
+	public int getCapacity()
+	{
+		return mCapacity;
+	}
+
+
+	public int size()
+	{
+		int size = 0;
+
+		for (Segment segment : mSegments)
+		{
+			synchronized (segment)
+			{
+				size += segment.size();
+			}
+		}
+
+		return size;
+	}
+
+
+	public long getHitCount()
+	{
+		long count = 0;
+
+		for (Segment segment : mSegments)
+		{
+			synchronized (segment)
+			{
+				count += segment.mHitCount;
+			}
+		}
+
+		return count;
+	}
+
+
+	public long getMissCount()
+	{
+		long count = 0;
+
+		for (Segment segment : mSegments)
+		{
+			synchronized (segment)
+			{
+				count += segment.mMissCount;
+			}
+		}
+
+		return count;
+	}
+
+
+	public long getEvictionCount()
+	{
+		long count = 0;
+
+		for (Segment segment : mSegments)
+		{
+			synchronized (segment)
+			{
+				count += segment.mEvictionCount;
+			}
+		}
+
+		return count;
+	}
+
+
+	/**
+	 * @return the fraction of lookups found in the cache or 0 if nothing has been looked up
+	 */
+	public double getHitRate()
+	{
+		long hits = getHitCount();
+		long lookups = hits + getMissCount();
+
+		return lookups == 0 ? 0 : hits / (double)lookups;
+	}
+
+
+	/**
+	 * Removes all results and resets the counters.
+	 */
+	public void clear()
+	{
+		for (Segment segment : mSegments)
+		{
+			synchronized (segment)
+			{
+				segment.clear();
+				segment.mHitCount = 0;
+				segment.mMissCount = 0;
+				segment.mEvictionCount = 0;
+			}
+		}
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return "GlyphCache[size=" + size() + ",capacity=" + mCapacity + ",hits=" + getHitCount() + ",misses=" + getMissCount() + ",evictions=" + getEvictionCount() + "]";
+	}
+
+
+	/**
+	 * A part of the cache with its own lock, evicting its least recently used result when full.
+	 */
+	private static final class Segment extends LinkedHashMap<Key, Result[]>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int mCapacity;
+		private long mHitCount;
+		private long mMissCount;
+		private long mEvictionCount;
+
+
+		Segment(int aCapacity)
+		{
+			super(16, 0.75f, true);
+
+			mCapacity = aCapacity;
+		}
+
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Result[]> aEldest)
+		{
+			if (size() > mCapacity)
+			{
+				mEvictionCount++;
+				return true;
+			}
+			return false;
+		}
+	}
+
+
+	/**
+	 * A key of the cache. Lookup keys are reused by the FeatureExtractor of each thread, the cache stores copies.
+	 */
+	static final class Key
+	{
+		private final long[] mMatrix;
+		private BitSet mAdmission;
+		private int mCandidates;
+		private TemplateMatrix mTemplates;
+		private int mHashCode;
+
+
+		/**
+		 * @param aMatrixLength
+		 *   number of cells of the matrices of the key
+		 */
+		Key(int aMatrixLength)
+		{
+			mMatrix = new long[(aMatrixLength + 63) >>> 6];
+		}
+
+
+		/**
+		 * Sets the content of this key. The admission set is referenced, not copied.
+		 *
+		 * @param aTemplates
+		 *   the learned symbols, compared by identity since they are replaced when symbols are learned
+		 * @return this key
+		 */
+		Key set(boolean[] aMatrix, BitSet aAdmission, int aCandidates, TemplateMatrix aTemplates)
+		{
+			Arrays.fill(mMatrix, 0);
+
+			for (int i = 0; i < aMatrix.length; i++)
+			{
+				if (aMatrix[i])
+				{
+					mMatrix[i >>> 6] |= 1L << i;
+				}
+			}
+
+			mAdmission = aAdmission;
+			mCandidates = aCandidates;
+			mTemplates = aTemplates;
+			mHashCode = 31 * (31 * Arrays.hashCode(mMatrix) + aAdmission.hashCode()) + aCandidates;
+
+			return this;
+		}
+
+
+		private Key copy()
+		{
+			Key key = new Key(64 * mMatrix.length);
+			System.arraycopy(mMatrix, 0, key.mMatrix, 0, mMatrix.length);
+			key.mAdmission = (BitSet)mAdmission.clone();
+			key.mCandidates = mCandidates;
+			key.mTemplates = mTemplates;
+			key.mHashCode = mHashCode;
+
+			return key;
+		}
+
+
+		@Override
+		public int hashCode()
+		{
+			return mHashCode;
+		}
+
+
+		@Override
+		public boolean equals(Object aOther)
+		{
+			if (!(aOther instanceof Key))
+			{
+				return false;
+			}
+
+			Key other = (Key)aOther;
+
+			return mHashCode == other.mHashCode
+				&& mCandidates == other.mCandidates
+				&& mTemplates == other.mTemplates
+				&& Arrays.equals(mMatrix, other.mMatrix)
+				&& mAdmission.equals(other.mAdmission);
+		}
+	}
+}
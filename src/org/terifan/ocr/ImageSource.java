@@ -0,0 +1,100 @@
+package org.terifan.ocr;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+
+/**
+ * A page image decoded when needed, allowing a BatchProcessor to hold only the pages currently being processed.
+ */
+public interface ImageSource
+{
+	public String getName();
+
+	public BufferedImage read() throws IOException;
+
+
+	/**
+	 * Returns a source decoding a file with ImageIO.
+	 */
+	public static ImageSource of(Path aFile)
+	{
+		return new ImageSource()
+		{
+			@Override
+			public String getName()
+			{
+				return aFile.toString();
+			}
+
+
+			@Override
+			public BufferedImage read() throws IOException
+			{
+				BufferedImage image = ImageIO.read(aFile.toFile());
+
+				if (image == null)
+				{
+					throw new IOException("Unsupported image format: " + aFile);
+				}
+
+				return image;
+			}
+		};
+	}
+
+
+	/**
+	 * Returns a source of an image already in memory.
+	 */
+	public static ImageSource of(String aName, BufferedImage aImage)
+	{
+		return new ImageSource()
+		{
+			@Override
+			public String getName()
+			{
+				return aName;
+			}
+
+
+			@Override
+			public BufferedImage read()
+			{
+				return aImage;
+			}
+		};
+	}
+
+
+	/**
+	 * Returns sources of the files in a directory with a suffix readable by ImageIO, ordered by file name.
+	 */
+	public static List<ImageSource> list(Path aDirectory) throws IOException
+	{
+		HashSet<String> suffixes = new HashSet<>(Arrays.asList(ImageIO.getReaderFileSuffixes()));
+		ArrayList<ImageSource> sources = new ArrayList<>();
+
+		try (Stream<Path> files = Files.list(aDirectory))
+		{
+			files.filter(Files::isRegularFile).filter(f -> suffixes.contains(getSuffix(f))).sorted().forEach(f -> sources.add(of(f)));
+		}
+
+		return sources;
+	}
+
+
+	private static String getSuffix(Path aFile)
+	{
+		String name = aFile.getFileName().toString();
+		return name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+	}
+}
@@ -0,0 +1,66 @@
+package org.terifan.ocr;
+
+
+/**
+ * A summed-area table of black pixels. Each entry holds the number of black pixels above and to the left of it
+ * allowing the black pixel count of any rectangle to be computed with four lookups.
+ */
+final class IntegralImage
+{
+	private final int mWidth;
+	private final int mHeight;
+	private final int mScan;
+	private final int[] mSums;
+
+
+	IntegralImage(PackedBitmap aBitmap)
+	{
+		mWidth = aBitmap.getWidth();
+		mHeight = aBitmap.getHeight();
+		mScan = mWidth + 1;
+		mSums = new int[mScan * (mHeight + 1)];
+
+		for (int y = 0; y < mHeight; y++)
+		{
+			int above = y * mScan + 1;
+			int row = above + mScan;
+			int sum = 0;
+
+			for (int wi = 0, x = 0; wi < aBitmap.getStride(); wi++)
+			{
+				long word = aBitmap.getWord(y, wi);
+
+				for (int n = Math.min(64, mWidth - x); --n >= 0; x++, word >>>= 1)
+				{
+					sum += (int)word & 1;
+					mSums[row + x] = mSums[above + x] + sum;
+				}
+			}
+		}
+	}
+
+
+	public int getWidth()
+	{
+		return mWidth;
+	}
+
+
+	public int getHeight()
+	{
+		return mHeight;
+	}
+
+
+	/**
+	 * Return number of black pixels inside the rectangle. The rectangle must be inside the image.
+	 */
+	public int countBlack(int aX, int aY, int aWidth, int aHeight)
+	{
+		int x1 = aX + aWidth;
+		int y0 = aY * mScan;
+		int y1 = (aY + aHeight) * mScan;
+
+		return mSums[y1 + x1] - mSums[y1 + aX] - mSums[y0 + x1] + mSums[y0 + aX];
+	}
+}
@@ -0,0 +1,563 @@
+package org.terifan.ocr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * A Resolver accepting words within a number of edits of a word in a lexicon. The lexicon is compiled into a minimal
+ * acyclic automaton (DAWG) and words are matched by walking the automaton with one row of the Levenshtein distance
+ * matrix per level, abandoning branches where the whole row exceeds the error limit. Words are compared ignoring case
+ * and support the same carriage return wildcard and trailing '^' prefix marker as SimpleResolver.
+ * <p>
+ * Symbols are classified from left to right and a symbol is admitted if the characters already classified in the word
+ * followed by the character of the symbol are within max errors of the beginning of a lexicon word. Every word accepted
+ * by acceptWord can therefore still be produced. While fewer than max errors characters have been classified any
+ * character is admitted, since it may be an insertion.
+ */
+public class LexiconResolver implements Resolver
+{
+	private final static int FINAL = 1;
+	private final static int PREFIX = 2;
+
+	private final int mMaxErrors;
+	private final int mWordCount;
+	private final int mMaxLength;
+	private final int mRoot;
+	private final int[] mFirstEdge;
+	private final char[] mEdgeCharacters;
+	private final int[] mEdgeTargets;
+	private final byte[] mFlags;
+
+
+	public LexiconResolver(int aMaxErrors, String ... aWords)
+	{
+		this(aMaxErrors, Arrays.asList(aWords));
+	}
+
+
+	public LexiconResolver(int aMaxErrors, Collection<String> aWords)
+	{
+		if (aMaxErrors < 0)
+		{
+			throw new IllegalArgumentException("Illegal max errors: " + aMaxErrors);
+		}
+
+		TreeMap<String, Integer> words = new TreeMap<>();
+
+		for (String w : aWords)
+		{
+			w = w.toLowerCase();
+			int flag = FINAL;
+			if (w.endsWith("^"))
+			{
+				w = w.substring(0, w.length() - 1);
+				flag = PREFIX;
+			}
+			if (!w.isEmpty())
+			{
+				words.merge(w, flag, (a, b) -> a | b);
+			}
+		}
+
+		Builder builder = new Builder();
+		int maxLength = 0;
+
+		for (Map.Entry<String, Integer> entry : words.entrySet())
+		{
+			builder.add(entry.getKey(), entry.getValue());
+			maxLength = Math.max(maxLength, entry.getKey().length());
+		}
+
+		List<Node> nodes = builder.finish();
+
+		mMaxErrors = aMaxErrors;
+		mWordCount = words.size();
+		mMaxLength = maxLength;
+		mRoot = nodes.size() - 1;
+		mFlags = new byte[nodes.size()];
+		mFirstEdge = new int[nodes.size() + 1];
+
+		for (Node node : nodes)
+		{
+			mFlags[node.mId] = (byte)node.mFlags;
+			mFirstEdge[node.mId + 1] = mFirstEdge[node.mId] + node.mCount;
+		}
+
+		mEdgeCharacters = new char[mFirstEdge[nodes.size()]];
+		mEdgeTargets = new int[mEdgeCharacters.length];
+
+		for (Node node : nodes)
+		{
+			for (int i = 0, j = mFirstEdge[node.mId]; i < node.mCount; i++, j++)
+			{
+				mEdgeCharacters[j] = node.mCharacters[i];
+				mEdgeTargets[j] = node.mTargets[i].mId;
+			}
+		}
+	}
+
+
+	public int getMaxErrors()
+	{
+		return mMaxErrors;
+	}
+
+
+	public int getWordCount()
+	{
+		return mWordCount;
+	}
+
+
+	/**
+	 * @return number of states in the compiled automaton
+	 */
+	public int getStateCount()
+	{
+		return mFlags.length;
+	}
+
+
+	/**
+	 * Accepts symbols that can follow the characters already classified in the word of the TextBox.
+	 */
+	@Override
+	public boolean acceptSymbol(Page aPage, TextBox aTextBox, Symbol aSymbol)
+	{
+		BitSet admitted = getAdmittedCharacters(aTextBox);
+
+		return admitted == null || isAdmitted(admitted, aSymbol);
+	}
+
+
+	/**
+	 * Returns the symbols that can follow the characters already classified in the word of the TextBox, computed with
+	 * one walk of the automaton for all symbols.
+	 */
+	@Override
+	public BitSet getAdmission(Page aPage, TextBox aTextBox, List<Symbol> aSymbols, BitSet aBuffer)
+	{
+		BitSet admitted = getAdmittedCharacters(aTextBox);
+
+		aBuffer.clear();
+
+		if (admitted == null)
+		{
+			aBuffer.set(0, aSymbols.size());
+			return aBuffer;
+		}
+
+		for (int i = 0; i < aSymbols.size(); i++)
+		{
+			if (isAdmitted(admitted, aSymbols.get(i)))
+			{
+				aBuffer.set(i);
+			}
+		}
+
+		return aBuffer;
+	}
+
+
+	private static boolean isAdmitted(BitSet aCharacters, Symbol aSymbol)
+	{
+		return aCharacters.get(Character.toLowerCase(aSymbol.mCharacter.charAt(0)));
+	}
+
+
+	/**
+	 * Returns the characters that can follow the characters classified so far in the word of the TextBox, or null if
+	 * any character can. A character c can follow the classified text t if a prefix of a lexicon word is within max
+	 * errors - 1 of t, making c an insertion, or if a prefix is within max errors of t and c is the next character of
+	 * the word. Reaching a prefix word admits any character.
+	 */
+	private BitSet getAdmittedCharacters(TextBox aTextBox)
+	{
+		if (mWordCount == 0)
+		{
+			return null;
+		}
+
+		TextBox root = aTextBox;
+		while (root.getParent() != null)
+		{
+			root = root.getParent();
+		}
+
+		String text = root.toString().toLowerCase();
+		int n = text.length();
+
+		if (n < mMaxErrors)
+		{
+			return null;
+		}
+
+		int[][] rows = new int[Math.min(mMaxLength, n + mMaxErrors) + 1][n + 1];
+
+		for (int j = 0; j <= n; j++)
+		{
+			rows[0][j] = Math.min(j, mMaxErrors + 1);
+		}
+
+		BitSet characters = new BitSet(128);
+
+		return collect(mRoot, 0, text, rows, characters) ? null : characters;
+	}
+
+
+	/**
+	 * Collects the characters admitted after the text from a state at the given depth and the states below it. Returns
+	 * true if any character is admitted.
+	 */
+	private boolean collect(int aState, int aDepth, String aText, int[][] aRows, BitSet aCharacters)
+	{
+		int n = aText.length();
+		int[] prev = aRows[aDepth];
+
+		// the last cell is only computed within max errors of the diagonal
+		if (aDepth + mMaxErrors >= n)
+		{
+			int d = prev[n];
+
+			if (d < mMaxErrors)
+			{
+				return true;
+			}
+			if (d == mMaxErrors)
+			{
+				for (int e = mFirstEdge[aState], end = mFirstEdge[aState + 1]; e < end; e++)
+				{
+					if (mEdgeCharacters[e] == '\r')
+					{
+						return true;
+					}
+					aCharacters.set(mEdgeCharacters[e]);
+				}
+			}
+		}
+
+		if (aDepth + 1 >= aRows.length)
+		{
+			return false;
+		}
+
+		int[] curr = aRows[aDepth + 1];
+
+		for (int e = mFirstEdge[aState], end = mFirstEdge[aState + 1]; e < end; e++)
+		{
+			int target = mEdgeTargets[e];
+
+			if (nextRow(mEdgeCharacters[e], aText, prev, curr, aDepth + 1) > mMaxErrors)
+			{
+				continue;
+			}
+
+			if ((mFlags[target] & PREFIX) != 0 || collect(target, aDepth + 1, aText, aRows, aCharacters))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+
+	@Override
+	public boolean acceptWord(Page aPage, TextBox aTextBox)
+	{
+		if (mWordCount == 0)
+		{
+			return true;
+		}
+
+		return matches(aTextBox.toString());
+	}
+
+
+	/**
+	 * Returns true if a lexicon word is within max errors of the text.
+	 */
+	public boolean matches(String aText)
+	{
+		return search(aText, null);
+	}
+
+
+	/**
+	 * Returns the lexicon words within max errors of the text in lexicographic order. Prefix words are returned with
+	 * their trailing '^'.
+	 */
+	public List<String> findMatches(String aText)
+	{
+		ArrayList<String> matches = new ArrayList<>();
+		search(aText, matches);
+		return matches;
+	}
+
+
+	private boolean search(String aText, List<String> aMatches)
+	{
+		String text = aText.toLowerCase();
+		int n = text.length();
+		int[][] rows = new int[Math.min(mMaxLength, n + mMaxErrors) + 1][n + 1];
+
+		for (int j = 0; j <= n; j++)
+		{
+			rows[0][j] = Math.min(j, mMaxErrors + 1);
+		}
+
+		return search(mRoot, 0, text, rows, aMatches == null ? null : new StringBuilder(), aMatches);
+	}
+
+
+	/**
+	 * Visits the outgoing edges of a state at the given depth. Returns true when a match is found and no list of matches
+	 * is being collected.
+	 */
+	private boolean search(int aState, int aDepth, String aText, int[][] aRows, StringBuilder aPath, List<String> aMatches)
+	{
+		int n = aText.length();
+		int limit = mMaxErrors + 1;
+		int[] prev = aRows[aDepth];
+
+		if (aDepth + 1 >= aRows.length)
+		{
+			return false;
+		}
+
+		int[] curr = aRows[aDepth + 1];
+		int to = Math.min(n, aDepth + 1 + mMaxErrors);
+
+		for (int e = mFirstEdge[aState], end = mFirstEdge[aState + 1]; e < end; e++)
+		{
+			char c = mEdgeCharacters[e];
+			int target = mEdgeTargets[e];
+
+			if (nextRow(c, aText, prev, curr, aDepth + 1) >= limit)
+			{
+				continue;
+			}
+
+			if (aPath != null)
+			{
+				aPath.append(c);
+			}
+
+			int flags = mFlags[target];
+
+			if ((flags & FINAL) != 0 && to == n && curr[n] < limit)
+			{
+				if (aMatches == null)
+				{
+					return true;
+				}
+				aMatches.add(aPath.toString());
+			}
+			if ((flags & PREFIX) != 0)
+			{
+				if (aMatches == null)
+				{
+					return true;
+				}
+				aMatches.add(aPath + "^");
+			}
+
+			if (search(target, aDepth + 1, aText, aRows, aPath, aMatches))
+			{
+				return true;
+			}
+
+			if (aPath != null)
+			{
+				aPath.setLength(aPath.length() - 1);
+			}
+		}
+
+		return false;
+	}
+
+
+	/**
+	 * Computes the distance row of the text after appending an edge character to the path. Only cells within max errors
+	 * of the diagonal are computed, the others are known to exceed the limit. Returns the smallest value of the row.
+	 */
+	private int nextRow(char aCharacter, String aText, int[] aPrev, int[] aCurr, int aRow)
+	{
+		int n = aText.length();
+		int limit = mMaxErrors + 1;
+		int from = Math.max(1, aRow - mMaxErrors);
+		int to = Math.min(n, aRow + mMaxErrors);
+
+		aCurr[from - 1] = from == 1 ? Math.min(aRow, limit) : limit;
+		int rowMin = aCurr[from - 1];
+
+		for (int j = from; j <= to; j++)
+		{
+			int d;
+			if (aCharacter == '\r' || aCharacter == aText.charAt(j - 1))
+			{
+				d = aPrev[j - 1];
+			}
+			else
+			{
+				d = Math.min(1 + Math.min(aPrev[j - 1], Math.min(aPrev[j], aCurr[j - 1])), limit);
+			}
+
+			aCurr[j] = d;
+			rowMin = Math.min(rowMin, d);
+		}
+
+		if (to < n)
+		{
+			aCurr[to + 1] = limit;
+		}
+
+		return rowMin;
+	}
+
+
+	/**
+	 * Builds a minimal automaton from words added in lexicographic order (Daciuk et al. 2000). Nodes on the path of the
+	 * last added word are unchecked; all other nodes are registered and identical to no other registered node.
+	 */
+	private static class Builder
+	{
+		private final HashMap<Node, Node> mRegister = new HashMap<>();
+		private final ArrayList<Node> mNodes = new ArrayList<>();
+		private final ArrayList<Node> mUnchecked = new ArrayList<>();
+		private final Node mRoot = new Node();
+		private String mPreviousWord = "";
+
+
+		void add(String aWord, int aFlags)
+		{
+			int common = 0;
+			while (common < aWord.length() && common < mPreviousWord.length() && aWord.charAt(common) == mPreviousWord.charAt(common))
+			{
+				common++;
+			}
+
+			minimize(common);
+
+			Node node = mUnchecked.isEmpty() ? mRoot : mUnchecked.get(mUnchecked.size() - 1);
+
+			for (int i = common; i < aWord.length(); i++)
+			{
+				Node child = new Node();
+				node.add(aWord.charAt(i), child);
+				mUnchecked.add(child);
+				node = child;
+			}
+
+			node.mFlags |= aFlags;
+			mPreviousWord = aWord;
+		}
+
+
+		/**
+		 * Returns the registered nodes ordered by id, the root being last.
+		 */
+		List<Node> finish()
+		{
+			minimize(0);
+			register(mRoot);
+			return mNodes;
+		}
+
+
+		private void minimize(int aDepth)
+		{
+			for (int i = mUnchecked.size(); --i >= aDepth;)
+			{
+				Node parent = i == 0 ? mRoot : mUnchecked.get(i - 1);
+				Node child = mUnchecked.remove(i);
+				Node existing = mRegister.get(child);
+
+				if (existing != null)
+				{
+					parent.mTargets[parent.mCount - 1] = existing;
+				}
+				else
+				{
+					register(child);
+				}
+			}
+		}
+
+
+		private void register(Node aNode)
+		{
+			aNode.mId = mNodes.size();
+			mNodes.add(aNode);
+			mRegister.put(aNode, aNode);
+		}
+	}
+
+
+	/**
+	 * A state of the automaton under construction. Equality is defined by the flags and outgoing edges, which always
+	 * point to registered nodes when a node is compared.
+	 */
+	private static class Node
+	{
+		int mId = -1;
+		int mFlags;
+		int mCount;
+		char[] mCharacters = new char[1];
+		Node[] mTargets = new Node[1];
+
+
+		void add(char aCharacter, Node aTarget)
+		{
+			if (mCount == mCharacters.length)
+			{
+				mCharacters = Arrays.copyOf(mCharacters, 2 * mCount);
+				mTargets = Arrays.copyOf(mTargets, 2 * mCount);
+			}
+
+			mCharacters[mCount] = aCharacter;
+			mTargets[mCount++] = aTarget;
+		}
+
+
+		@Override
+		public int hashCode()
+		{
+			int h = mFlags;
+			for (int i = 0; i < mCount; i++)
+			{
+				h = 31 * (31 * h + mCharacters[i]) + mTargets[i].mId;
+			}
+			return h;
+		}
+
+
+		@Override
+		public boolean equals(Object aOther)
+		{
+			Node other = (Node)aOther;
+
+			if (mFlags != other.mFlags || mCount != other.mCount)
+			{
+				return false;
+			}
+
+			for (int i = 0; i < mCount; i++)
+			{
+				if (mCharacters[i] != other.mCharacters[i] || mTargets[i] != other.mTargets[i])
+				{
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package org.terifan.ocr;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+
+/**
+ * The pages of a multi-page image file, typically a TIFF from a document scanner, as a sequence of ImageSources. Each
+ * page is decoded when its source is read and isn't retained afterwards, so a BatchProcessor or PagePipeline with a
+ * small max in-flight count holds only a few pages of a long document in memory. Pages are decoded to 8-bit gray when
+ * the reader supports it. The file stays open until the source is closed.
+ */
+public class MultiPageImageSource implements Iterable<ImageSource>, Closeable
+{
+	private final Path mFile;
+	private final ImageInputStream mInputStream;
+	private final ImageReader mReader;
+	private int mPageCount;
+
+
+	public MultiPageImageSource(Path aFile) throws IOException
+	{
+		mFile = aFile;
+		mInputStream = ImageIO.createImageInputStream(aFile.toFile());
+		mPageCount = -1;
+
+		if (mInputStream == null)
+		{
+			throw new IOException("Failed to open file: " + aFile);
+		}
+
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(mInputStream);
+
+		if (!readers.hasNext())
+		{
+			mInputStream.close();
+			throw new IOException("Unsupported image format: " + aFile);
+		}
+
+		mReader = readers.next();
+		mReader.setInput(mInputStream, false, true);
+	}
+
+
+	/**
+	 * Returns the number of pages, found by reading the page directory of the file on first use.
+	 */
+	public synchronized int getPageCount() throws IOException
+	{
+		if (mPageCount < 0)
+		{
+			mPageCount = mReader.getNumImages(true);
+		}
+
+		return mPageCount;
+	}
+
+
+	/**
+	 * Decodes a page. Pages are decoded one at a time since the reader is shared by all pages.
+	 */
+	public synchronized BufferedImage readPage(int aPageIndex) throws IOException
+	{
+		ImageReadParam param = mReader.getDefaultReadParam();
+
+		for (Iterator<ImageTypeSpecifier> it = mReader.getImageTypes(aPageIndex); it.hasNext();)
+		{
+			ImageTypeSpecifier type = it.next();
+
+			if (type.getBufferedImageType() == BufferedImage.TYPE_BYTE_GRAY)
+			{
+				param.setDestinationType(type);
+				break;
+			}
+		}
+
+		return mReader.read(aPageIndex, param);
+	}
+
+
+	/**
+	 * Returns a source for each page in page order. The page count is read when the iterator is created.
+	 */
+	@Override
+	public Iterator<ImageSource> iterator()
+	{
+		int pageCount;
+		try
+		{
+			pageCount = getPageCount();
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+
+		return new Iterator<ImageSource>()
+		{
+			int mPageIndex;
+
+
+			@Override
+			public boolean hasNext()
+			{
+				return mPageIndex < pageCount;
+			}
+
+
+			@Override
+			public ImageSource next()
+			{
+				if (mPageIndex >= pageCount)
+				{
+					throw new NoSuchElementException();
+				}
+
+				return new PageSource(mPageIndex++);
+			}
+		};
+	}
+
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		mReader.dispose();
+		mInputStream.close();
+	}
+
+
+	private class PageSource implements ImageSource
+	{
+		private final int mPageIndex;
+
+
+		PageSource(int aPageIndex)
+		{
+			mPageIndex = aPageIndex;
+		}
+
+
+		@Override
+		public String getName()
+		{
+			return mFile + "#" + (mPageIndex + 1);
+		}
+
+
+		@Override
+		public BufferedImage read() throws IOException
+		{
+			return readPage(mPageIndex);
+		}
+	}
+}
@@ -2,178 +2,302 @@ package org.terifan.ocr;
 
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 
+/**
+ * Learns alphabets and scans pages. The engine combines an OCRSession with a model of the symbols learned so far,
+ * servers processing concurrent requests should share the OCRModel returned by getModel and use one session each.
+ */
 public class OCREngine
 {
 	public final static int DEFAULT_MATRIX_SIZE = 9;
 
-	private Page mPage;
-	private Resolver mResolver;
-	private ArrayList<TextBox> mTextBoxes;
-	private ArrayList<TextBox> mScanResult;
 	private CurvatureClassifier mCurvatureClassifier;
-	private Settings mSettings;
+	private OCRModel mModel;
+	private OCRSession mSession;
 	private int mMatrixSize;
+	private DistanceMetric mDistanceMetric;
+	private ForkJoinPool mForkJoinPool;
 
 
 	public OCREngine(int aMatrixSize)
 	{
-		mMatrixSize = aMatrixSize;
+		this(aMatrixSize, DistanceMetric.CHESSBOARD);
+	}
 
-		reset();
+
+	/**
+	 * @param aDistanceMetric
+	 *   metric used for the distance from each cell of a symbol to its closest black cell
+	 */
+	public OCREngine(int aMatrixSize, DistanceMetric aDistanceMetric)
+	{
+		mMatrixSize = aMatrixSize;
+		mDistanceMetric = aDistanceMetric;
+		mCurvatureClassifier = new CurvatureClassifier(mMatrixSize, mDistanceMetric);
+		mSession = new OCRSession(getModel());
+		mSession.setGlyphCache(new GlyphCache());
 	}
 
 
 	public void reset()
 	{
-		mCurvatureClassifier = new CurvatureClassifier(mMatrixSize);
-		mResolver = null;
+		mCurvatureClassifier = new CurvatureClassifier(mMatrixSize, mDistanceMetric);
+
+		if (mSession.getGlyphCache() != null)
+		{
+			mSession.getGlyphCache().clear();
+		}
 	}
 
 
-	public void learnAlphabet(String aFontName, Bitmap aBitmap)
+	/**
+	 * Returns an immutable model of the symbols learned so far. The same model is returned until more symbols are
+	 * learned or the alphabets are cleared.
+	 */
+	public OCRModel getModel()
 	{
-		learnAlphabet(aFontName, aBitmap, null);
+		if (mModel == null || mModel.getCurvatureClassifier().getTemplates() != mCurvatureClassifier.getTemplates())
+		{
+			mModel = new OCRModel(new CurvatureClassifier(mCurvatureClassifier));
+		}
+
+		return mModel;
 	}
 
 
-	public void learnAlphabet(String aFontName, Bitmap aBitmap, String aAlphabet)
+	/**
+	 * Returns the session of the loaded page using the current model.
+	 */
+	public OCRSession getSession()
 	{
-		mCurvatureClassifier.learn(aFontName, aBitmap, aAlphabet);
+		OCRModel model = getModel();
+
+		if (mSession.getModel() != model)
+		{
+			mSession.setModel(model);
+		}
+
+		return mSession;
 	}
 
 
-	public void clearAlphabets()
+	public DistanceMetric getDistanceMetric()
 	{
-		mCurvatureClassifier.reset();
+		return mDistanceMetric;
 	}
 
 
-	public void loadPage(Page aPage, Settings aSettings)
+	public ForkJoinPool getForkJoinPool()
 	{
-		loadPage(aPage, aSettings, 0, 0, 1, 1);
+		return mForkJoinPool;
 	}
 
 
-	public void loadPage(Rectangle2D aRect, Page aPage, Settings aSettings)
+	/**
+	 * Sets the pool used to process pages concurrently. Page segmentation splits the page into horizontal bands processed
+	 * by the pool and scanning classifies each word as a separate task. Learning extracts the cells of alphabet sheets
+	 * concurrently. The result is identical to processing the page on the calling thread. When a pool is set the
+	 * Resolver passed to the scan methods must be thread-safe.
+	 *
+	 * @param aForkJoinPool the pool or null to process pages on the calling thread (default)
+	 */
+	public void setForkJoinPool(ForkJoinPool aForkJoinPool)
 	{
-		loadPage(aPage, aSettings, aRect.getX(), aRect.getY(), aRect.getWidth(), aRect.getHeight());
+		mForkJoinPool = aForkJoinPool;
+		mSession.setForkJoinPool(aForkJoinPool);
 	}
 
 
-	public void loadPage(Page aPage, Settings aSettings, double aFromX, double aFromY, double aToX, double aToY)
+	public boolean isDiagnostics()
 	{
-		mPage = aPage;
-		mSettings = aSettings;
-		mTextBoxes = new PageSegmenter().scanPage(aFromX, aFromY, aToX, aToY, mPage, mSettings);
+		return mSession.isDiagnostics();
 	}
 
 
-	public boolean scanRelative(TextBox aBox, double aOffsetX, double aOffsetY, double aWidth, double aHeight, Resolver aResolver)
+	/**
+	 * When enabled the TextBox of each classified symbol can render an image of the extracted curvature features
+	 * through its getSymbolBitmap method. The image is rendered the first time it's requested. Disabled by default.
+	 */
+	public void setDiagnostics(boolean aDiagnostics)
 	{
-		double x1 = aBox.x / (double)mPage.getWidth()  + aOffsetX;
-		double y1 = aBox.y / (double)mPage.getHeight() + aOffsetY;
+		mSession.setDiagnostics(aDiagnostics);
+	}
 
-		double x2 = x1 + aWidth;
-		double y2 = y1 + aHeight;
 
-		if (x2 < x1)
-		{
-			double t = x2; x2 = x1; x1 = t;
-		}
-		if (y2 < y1)
-		{
-			double t = y2; y2 = y1; y1 = t;
-		}
+	public int getCandidateCount()
+	{
+		return mSession.getCandidateCount();
+	}
 
-		return scan(x1, y1, x2, y2, aResolver);
+
+	/**
+	 * Sets the number of best matching symbols kept in the candidate list of each classified TextBox. Default is 1.
+	 */
+	public void setCandidateCount(int aCandidateCount)
+	{
+		mSession.setCandidateCount(aCandidateCount);
 	}
 
 
-	public boolean scan(Rectangle2D aRect, Resolver aResolver)
+	public GlyphCache getGlyphCache()
 	{
-		return scan(aRect.getX(), aRect.getY(), aRect.getWidth(), aRect.getHeight(), aResolver);
+		return mSession.getGlyphCache();
 	}
 
 
-	public boolean scan(double aFromX, double aFromY, double aToX, double aToY, Resolver aResolver)
+	/**
+	 * Sets the cache of classification results shared by identical symbols. A cache with the default capacity is used
+	 * unless changed. The cache isn't used when diagnostics are enabled.
+	 *
+	 * @param aGlyphCache the cache or null to classify every symbol
+	 */
+	public void setGlyphCache(GlyphCache aGlyphCache)
 	{
-		if (mTextBoxes == null)
-		{
-			throw new IllegalStateException("Page not loaded - call load method first.");
-		}
+		mSession.setGlyphCache(aGlyphCache);
+	}
 
-		mResolver = aResolver;
 
-		ArrayList<TextBox> results = new ArrayList<>();
+	/**
+	 * Writes all learned symbols to a file that can be loaded by the loadTemplates method instead of learning the
+	 * alphabets again.
+	 */
+	public void saveTemplates(Path aFile) throws IOException
+	{
+		TemplateStore.write(aFile, mMatrixSize, mCurvatureClassifier.getSymbols());
+	}
 
-		for (TextBox box : mTextBoxes)
-		{
-			if (box.x + box.width > mPage.getWidth() * aFromX && box.y + box.height > mPage.getHeight() * aFromY && box.x < mPage.getWidth() * aToX && box.y < mPage.getHeight() * aToY)
-			{
-				box.getResults().clear();
 
-				scanBox(box, box);
+	/**
+	 * Adds the symbols of a file written by the saveTemplates method. The file is memory mapped while read. Loaded
+	 * symbols hold the features used for classification and have no debug images.
+	 *
+	 * @throws IOException
+	 *   if the file is damaged or was written with a different matrix size
+	 */
+	public void loadTemplates(Path aFile) throws IOException
+	{
+		mCurvatureClassifier.addSymbols(TemplateStore.read(aFile, mMatrixSize));
+	}
 
-				box.setResolver(aResolver);
-				box.setComplete(true);
 
-				if (aResolver.acceptWord(mPage, box))
-				{
-					results.add(box);
-				}
-			}
-		}
+	public void learnAlphabet(String aFontName, Bitmap aBitmap)
+	{
+		learnAlphabet(aFontName, aBitmap, null);
+	}
 
-		mScanResult = results;
 
-		return true;
+	public void learnAlphabet(String aFontName, Bitmap aBitmap, String aAlphabet)
+	{
+		mCurvatureClassifier.addSymbols(mCurvatureClassifier.learnSymbols(aFontName, aBitmap, aAlphabet, mForkJoinPool));
 	}
 
 
-	private void scanBox(TextBox aTextBox, TextBox aRootBox)
+	/**
+	 * Learns several alphabets using the default alphabet. When a pool is set the alphabets and the cells of each are
+	 * processed concurrently. Symbols are added in the iteration order of the map.
+	 *
+	 * @param aAlphabets
+	 *   alphabet sheets by font name
+	 */
+	public void learnAlphabets(Map<String, Bitmap> aAlphabets)
 	{
-		if (aTextBox.getChildren().isEmpty())
-		{
-			Result result = mCurvatureClassifier.classifySymbol(mPage, aTextBox, mResolver);
+		ArrayList<Map.Entry<String, Bitmap>> entries = new ArrayList<>(aAlphabets.entrySet());
+		ArrayList<ArrayList<Symbol>> symbols = new ArrayList<>();
 
-			if (result == null || result.mSymbol == null)
+		if (mForkJoinPool == null)
+		{
+			for (Map.Entry<String, Bitmap> entry : entries)
 			{
-				return;
+				symbols.add(mCurvatureClassifier.learnSymbols(entry.getKey(), entry.getValue(), null, null));
 			}
-
-			aTextBox.getResults().add(result);
-			aRootBox.getResults().add(result); // ?????
 		}
 		else
 		{
-			for (TextBox box : aTextBox.getChildren())
+			ArrayList<ForkJoinTask<ArrayList<Symbol>>> tasks = new ArrayList<>();
+			for (Map.Entry<String, Bitmap> entry : entries)
 			{
-				box.getResults().clear();
-
-				scanBox(box, aRootBox);
+				tasks.add(mForkJoinPool.submit(() -> mCurvatureClassifier.learnSymbols(entry.getKey(), entry.getValue(), null, mForkJoinPool)));
 			}
+			for (ForkJoinTask<ArrayList<Symbol>> task : tasks)
+			{
+				symbols.add(task.join());
+			}
+		}
+
+		ArrayList<Symbol> all = new ArrayList<>();
+		for (ArrayList<Symbol> list : symbols)
+		{
+			all.addAll(list);
 		}
+
+		mCurvatureClassifier.addSymbols(all);
+	}
+
+
+	public void clearAlphabets()
+	{
+		mCurvatureClassifier.reset();
+	}
+
+
+	public void loadPage(Page aPage, Settings aSettings)
+	{
+		getSession().loadPage(aPage, aSettings);
+	}
+
+
+	public void loadPage(Rectangle2D aRect, Page aPage, Settings aSettings)
+	{
+		getSession().loadPage(aRect, aPage, aSettings);
+	}
+
+
+	public void loadPage(Page aPage, Settings aSettings, double aFromX, double aFromY, double aToX, double aToY)
+	{
+		getSession().loadPage(aPage, aSettings, aFromX, aFromY, aToX, aToY);
+	}
+
+
+	public boolean scanRelative(TextBox aBox, double aOffsetX, double aOffsetY, double aWidth, double aHeight, Resolver aResolver)
+	{
+		return getSession().scanRelative(aBox, aOffsetX, aOffsetY, aWidth, aHeight, aResolver);
+	}
+
+
+	public boolean scan(Rectangle2D aRect, Resolver aResolver)
+	{
+		return getSession().scan(aRect, aResolver);
+	}
+
+
+	public boolean scan(double aFromX, double aFromY, double aToX, double aToY, Resolver aResolver)
+	{
+		return getSession().scan(aFromX, aFromY, aToX, aToY, aResolver);
 	}
 
 
 	public ArrayList<TextBox> getTextBoxes()
 	{
-		return mTextBoxes;
+		return mSession.getTextBoxes();
 	}
 
 
 	public ArrayList<TextBox> getScanResult()
 	{
-		return mScanResult;
+		return mSession.getScanResult();
 	}
 
 
 	public BufferedImage getBitmap(TextBox aTextBox)
 	{
-		return mPage.getBitmap().getRegion(aTextBox.x, aTextBox.y, aTextBox.x + aTextBox.width, aTextBox.y + aTextBox.height);
+		return mSession.getBitmap(aTextBox);
 	}
 
 
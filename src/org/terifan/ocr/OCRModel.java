@@ -0,0 +1,91 @@
+package org.terifan.ocr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * The learned symbols used to classify pages. A model never changes once created and is safe to share between any
+ * number of threads, each processing pages with its own OCRSession. Models are created by OCREngine.getModel or read
+ * from a template file.
+ */
+public class OCRModel
+{
+	private final CurvatureClassifier mCurvatureClassifier;
+	private final GlyphCache mGlyphCache;
+
+
+	OCRModel(CurvatureClassifier aCurvatureClassifier)
+	{
+		mCurvatureClassifier = aCurvatureClassifier;
+		mGlyphCache = new GlyphCache();
+	}
+
+
+	/**
+	 * Reads a model from a file written by OCREngine.saveTemplates or OCRModel.saveTemplates.
+	 *
+	 * @throws IOException
+	 *   if the file is damaged or was written with a different matrix size
+	 */
+	public static OCRModel load(Path aFile, int aMatrixSize, DistanceMetric aDistanceMetric) throws IOException
+	{
+		CurvatureClassifier classifier = new CurvatureClassifier(aMatrixSize, aDistanceMetric);
+		classifier.addSymbols(TemplateStore.read(aFile, aMatrixSize));
+
+		return new OCRModel(classifier);
+	}
+
+
+	public void saveTemplates(Path aFile) throws IOException
+	{
+		TemplateStore.write(aFile, mCurvatureClassifier.getMatrixSize(), mCurvatureClassifier.getSymbols());
+	}
+
+
+	public int getMatrixSize()
+	{
+		return mCurvatureClassifier.getMatrixSize();
+	}
+
+
+	public DistanceMetric getDistanceMetric()
+	{
+		return mCurvatureClassifier.getDistanceMetric();
+	}
+
+
+	/**
+	 * Returns the cache of classification results used by sessions of this model unless they set another. The cache is
+	 * shared by all sessions.
+	 */
+	public GlyphCache getGlyphCache()
+	{
+		return mGlyphCache;
+	}
+
+
+	/**
+	 * Returns copies of the learned symbols, changing them doesn't affect the model.
+	 */
+	public List<Symbol> getTemplates()
+	{
+		ArrayList<Symbol> symbols = mCurvatureClassifier.getSymbols();
+		ArrayList<Symbol> copies = new ArrayList<>(symbols.size());
+
+		for (Symbol symbol : symbols)
+		{
+			copies.add(symbol.copy());
+		}
+
+		return copies;
+	}
+
+
+	CurvatureClassifier getCurvatureClassifier()
+	{
+		return mCurvatureClassifier;
+	}
+}
@@ -0,0 +1,342 @@
+package org.terifan.ocr;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+
+/**
+ * Segments and scans pages using a shared OCRModel. A session holds the state of the loaded page and is used by one
+ * thread at a time, create one session per concurrent request.
+ */
+public class OCRSession
+{
+	private OCRModel mModel;
+	private Page mPage;
+	private Resolver mResolver;
+	private ArrayList<TextBox> mTextBoxes;
+	private ArrayList<TextBox> mScanResult;
+	private Settings mSettings;
+	private ForkJoinPool mForkJoinPool;
+	private boolean mDiagnostics;
+	private int mCandidateCount;
+	private GlyphCache mGlyphCache;
+
+
+	public OCRSession(OCRModel aModel)
+	{
+		mModel = aModel;
+		mCandidateCount = 1;
+		mGlyphCache = aModel.getGlyphCache();
+	}
+
+
+	public OCRModel getModel()
+	{
+		return mModel;
+	}
+
+
+	/**
+	 * Replaces the model, used by OCREngine when symbols have been learned since the page was loaded.
+	 */
+	void setModel(OCRModel aModel)
+	{
+		mModel = aModel;
+	}
+
+
+	public ForkJoinPool getForkJoinPool()
+	{
+		return mForkJoinPool;
+	}
+
+
+	/**
+	 * Sets the pool used to process the page concurrently. Page segmentation splits the page into horizontal bands
+	 * processed by the pool and scanning classifies each word as a separate task. The result is identical to processing
+	 * the page on the calling thread. When a pool is set the Resolver passed to the scan methods must be thread-safe.
+	 *
+	 * @param aForkJoinPool the pool or null to process the page on the calling thread (default)
+	 */
+	public void setForkJoinPool(ForkJoinPool aForkJoinPool)
+	{
+		mForkJoinPool = aForkJoinPool;
+	}
+
+
+	public boolean isDiagnostics()
+	{
+		return mDiagnostics;
+	}
+
+
+	/**
+	 * When enabled the TextBox of each classified symbol can render an image of the extracted curvature features
+	 * through its getSymbolBitmap method. The image is rendered the first time it's requested. Disabled by default.
+	 */
+	public void setDiagnostics(boolean aDiagnostics)
+	{
+		mDiagnostics = aDiagnostics;
+	}
+
+
+	public int getCandidateCount()
+	{
+		return mCandidateCount;
+	}
+
+
+	/**
+	 * Sets the number of best matching symbols kept in the candidate list of each classified TextBox. Default is 1.
+	 */
+	public void setCandidateCount(int aCandidateCount)
+	{
+		if (aCandidateCount < 1)
+		{
+			throw new IllegalArgumentException("Candidate count must be at least one: " + aCandidateCount);
+		}
+
+		mCandidateCount = aCandidateCount;
+	}
+
+
+	public GlyphCache getGlyphCache()
+	{
+		return mGlyphCache;
+	}
+
+
+	/**
+	 * Sets the cache of classification results shared by identical symbols. The cache of the model is used unless
+	 * changed. The cache isn't used when diagnostics are enabled.
+	 *
+	 * @param aGlyphCache the cache or null to classify every symbol
+	 */
+	public void setGlyphCache(GlyphCache aGlyphCache)
+	{
+		mGlyphCache = aGlyphCache;
+	}
+
+
+	public void loadPage(Page aPage, Settings aSettings)
+	{
+		loadPage(aPage, aSettings, 0, 0, 1, 1);
+	}
+
+
+	public void loadPage(Rectangle2D aRect, Page aPage, Settings aSettings)
+	{
+		loadPage(aPage, aSettings, aRect.getX(), aRect.getY(), aRect.getWidth(), aRect.getHeight());
+	}
+
+
+	public void loadPage(Page aPage, Settings aSettings, double aFromX, double aFromY, double aToX, double aToY)
+	{
+		mPage = aPage;
+		mSettings = aSettings;
+		mTextBoxes = new PageSegmenter().scanPage(aFromX, aFromY, aToX, aToY, mPage, mSettings, mForkJoinPool);
+	}
+
+
+	public boolean scanRelative(TextBox aBox, double aOffsetX, double aOffsetY, double aWidth, double aHeight, Resolver aResolver)
+	{
+		double x1 = aBox.x / (double)mPage.getWidth()  + aOffsetX;
+		double y1 = aBox.y / (double)mPage.getHeight() + aOffsetY;
+
+		double x2 = x1 + aWidth;
+		double y2 = y1 + aHeight;
+
+		if (x2 < x1)
+		{
+			double t = x2; x2 = x1; x1 = t;
+		}
+		if (y2 < y1)
+		{
+			double t = y2; y2 = y1; y1 = t;
+		}
+
+		return scan(x1, y1, x2, y2, aResolver);
+	}
+
+
+	public boolean scan(Rectangle2D aRect, Resolver aResolver)
+	{
+		return scan(aRect.getX(), aRect.getY(), aRect.getWidth(), aRect.getHeight(), aResolver);
+	}
+
+
+	public boolean scan(double aFromX, double aFromY, double aToX, double aToY, Resolver aResolver)
+	{
+		if (mTextBoxes == null)
+		{
+			throw new IllegalStateException("Page not loaded - call load method first.");
+		}
+
+		mResolver = aResolver;
+
+		ArrayList<TextBox> boxes = new ArrayList<>(mTextBoxes.size());
+
+		for (TextBox box : mTextBoxes)
+		{
+			if (box.x + box.width > mPage.getWidth() * aFromX && box.y + box.height > mPage.getHeight() * aFromY && box.x < mPage.getWidth() * aToX && box.y < mPage.getHeight() * aToY)
+			{
+				boxes.add(box);
+			}
+		}
+
+		CurvatureClassifier classifier = mModel.getCurvatureClassifier();
+		ArrayList<TextBox> results = new ArrayList<>(boxes.size());
+
+		if (mForkJoinPool == null)
+		{
+			for (TextBox box : boxes)
+			{
+				if (scanWord(classifier, box, aResolver))
+				{
+					results.add(box);
+				}
+			}
+		}
+		else
+		{
+			ArrayList<ForkJoinTask<Boolean>> tasks = new ArrayList<>(boxes.size());
+
+			for (TextBox box : boxes)
+			{
+				tasks.add(mForkJoinPool.submit(() -> scanWord(classifier, box, aResolver)));
+			}
+
+			for (int i = 0; i < boxes.size(); i++)
+			{
+				if (tasks.get(i).join())
+				{
+					results.add(boxes.get(i));
+				}
+			}
+		}
+
+		mScanResult = results;
+
+		return true;
+	}
+
+
+	/**
+	 * Classify all symbols of a word.
+	 *
+	 * @return true if the Resolver accepts the word
+	 */
+	private boolean scanWord(CurvatureClassifier aClassifier, TextBox aTextBox, Resolver aResolver)
+	{
+		aTextBox.getResults().clear();
+
+		scanBox(aClassifier, aTextBox, aTextBox, aResolver);
+
+		aTextBox.setResolver(aResolver);
+		aTextBox.setComplete(true);
+
+		return aResolver.acceptWord(mPage, aTextBox);
+	}
+
+
+	private void scanBox(CurvatureClassifier aClassifier, TextBox aTextBox, TextBox aRootBox, Resolver aResolver)
+	{
+		if (aTextBox.getChildren().isEmpty())
+		{
+			Symbol symbol = aClassifier.extractMatrix(mPage, aTextBox, mDiagnostics);
+
+			aTextBox.setRegion(mPage.getBitmap(), symbol.mBorders);
+
+			if (mDiagnostics)
+			{
+				aClassifier.extractFeatures(symbol);
+
+				aTextBox.setSymbolBitmapRenderer(() -> aClassifier.generateCurvatureBitmap(symbol, aTextBox));
+			}
+			else
+			{
+				aTextBox.setSymbolBitmap(null);
+			}
+
+			ArrayList<Result> candidates = aTextBox.getCandidates();
+			candidates.clear();
+
+			aClassifier.classifySymbol(mPage, aTextBox, symbol, aResolver, mCandidateCount, mDiagnostics ? null : mGlyphCache, candidates);
+
+			if (candidates.isEmpty())
+			{
+				return;
+			}
+
+			Result result = candidates.get(0);
+
+			aTextBox.getResults().add(result);
+			aRootBox.getResults().add(result); // ?????
+		}
+		else
+		{
+			ArrayList<TextBox> children = aTextBox.getChildren();
+
+			// indexed since an iterator isn't eliminated in this recursive method
+			for (int i = 0; i < children.size(); i++)
+			{
+				TextBox box = children.get(i);
+				box.getResults().clear();
+
+				scanBox(aClassifier, box, aRootBox, aResolver);
+			}
+		}
+	}
+
+
+	public Page getPage()
+	{
+		return mPage;
+	}
+
+
+	public Resolver getResolver()
+	{
+		return mResolver;
+	}
+
+
+	public ArrayList<TextBox> getTextBoxes()
+	{
+		return mTextBoxes;
+	}
+
+
+	public ArrayList<TextBox> getScanResult()
+	{
+		return mScanResult;
+	}
+
+
+	/**
+	 * Drops the references from the TextBoxes of the page to the page Bitmap. Scanned TextBoxes otherwise keep the whole
+	 * page in memory for as long as they are referenced, to create the image of a symbol when getBitmap is called.
+	 * Images already created are kept.
+	 */
+	public void detachScanResult()
+	{
+		if (mTextBoxes == null)
+		{
+			return;
+		}
+
+		for (TextBox box : mTextBoxes)
+		{
+			box.releaseRegion();
+		}
+	}
+
+
+	public BufferedImage getBitmap(TextBox aTextBox)
+	{
+		return mPage.getBitmap().getRegion(aTextBox.x, aTextBox.y, aTextBox.x + aTextBox.width, aTextBox.y + aTextBox.height);
+	}
+}
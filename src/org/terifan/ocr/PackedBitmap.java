@@ -0,0 +1,310 @@
+package org.terifan.ocr;
+
+
+/**
+ * A binarized copy of a Bitmap storing 64 pixels per long. Each row starts on a word boundary and the
+ * leftmost pixel of a word is stored in the least significant bit, so Long.numberOfTrailingZeros finds
+ * the first black pixel of a word and Long.bitCount counts them.
+ */
+final class PackedBitmap
+{
+	private final int mWidth;
+	private final int mHeight;
+	private final int mStride;
+	private final long[] mBits;
+
+
+	PackedBitmap(Bitmap aBitmap)
+	{
+		mWidth = aBitmap.getWidth();
+		mHeight = aBitmap.getHeight();
+		mStride = (mWidth + 63) >>> 6;
+		mBits = new long[mStride * mHeight];
+
+		for (int y = 0, i = 0; y < mHeight; y++)
+		{
+			for (int x = 0; x < mWidth; x += 64, i++)
+			{
+				long word = 0;
+				for (int b = 0, n = Math.min(64, mWidth - x); b < n; b++)
+				{
+					if (aBitmap.isBlack(x + b, y))
+					{
+						word |= 1L << b;
+					}
+				}
+				mBits[i] = word;
+			}
+		}
+	}
+
+
+	public int getWidth()
+	{
+		return mWidth;
+	}
+
+
+	public int getHeight()
+	{
+		return mHeight;
+	}
+
+
+	/**
+	 * @return number of longs used for each row
+	 */
+	public int getStride()
+	{
+		return mStride;
+	}
+
+
+	/**
+	 * @return the 64 pixels starting at x = 64 * aWordIndex of the row
+	 */
+	public long getWord(int aY, int aWordIndex)
+	{
+		return mBits[aY * mStride + aWordIndex];
+	}
+
+
+	public boolean isBlack(int aX, int aY)
+	{
+		return (mBits[aY * mStride + (aX >>> 6)] & (1L << aX)) != 0;
+	}
+
+
+	/**
+	 * Returns the first black pixel of a row within the range.
+	 *
+	 * @param aFromX first pixel inclusive
+	 * @param aToX last pixel exclusive
+	 * @return the x coordinate or -1 if the range is white
+	 */
+	public int nextBlack(int aY, int aFromX, int aToX)
+	{
+		if (aFromX >= aToX)
+		{
+			return -1;
+		}
+
+		int offset = aY * mStride;
+		int wi = aFromX >>> 6;
+		int lastWi = (aToX - 1) >>> 6;
+		long word = mBits[offset + wi] & (-1L << aFromX);
+
+		for (;;)
+		{
+			if (word != 0)
+			{
+				int x = (wi << 6) + Long.numberOfTrailingZeros(word);
+				return x < aToX ? x : -1;
+			}
+			if (++wi > lastWi)
+			{
+				return -1;
+			}
+			word = mBits[offset + wi];
+		}
+	}
+
+
+	/**
+	 * Returns the first white pixel of a row within the range.
+	 *
+	 * @param aFromX first pixel inclusive
+	 * @param aToX last pixel exclusive
+	 * @return the x coordinate or -1 if the range is black
+	 */
+	public int nextWhite(int aY, int aFromX, int aToX)
+	{
+		if (aFromX >= aToX)
+		{
+			return -1;
+		}
+
+		int offset = aY * mStride;
+		int wi = aFromX >>> 6;
+		int lastWi = (aToX - 1) >>> 6;
+		long word = ~mBits[offset + wi] & (-1L << aFromX);
+
+		for (;;)
+		{
+			if (word != 0)
+			{
+				int x = (wi << 6) + Long.numberOfTrailingZeros(word);
+				return x < aToX ? x : -1;
+			}
+			if (++wi > lastWi)
+			{
+				return -1;
+			}
+			word = ~mBits[offset + wi];
+		}
+	}
+
+
+	/**
+	 * @return true if any pixel in the range [aFromX, aToX) of the row is black
+	 */
+	public boolean hasBlack(int aY, int aFromX, int aToX)
+	{
+		return nextBlack(aY, aFromX, aToX) != -1;
+	}
+
+
+	/**
+	 * @return number of black pixels in the range [aFromX, aToX) of the row
+	 */
+	public int countBlack(int aY, int aFromX, int aToX)
+	{
+		if (aFromX >= aToX)
+		{
+			return 0;
+		}
+
+		int offset = aY * mStride;
+		int firstWi = aFromX >>> 6;
+		int lastWi = (aToX - 1) >>> 6;
+		int count = 0;
+
+		for (int wi = firstWi; wi <= lastWi; wi++)
+		{
+			long word = mBits[offset + wi];
+			if (wi == firstWi)
+			{
+				word &= -1L << aFromX;
+			}
+			if (wi == lastWi)
+			{
+				word &= -1L >>> (63 - ((aToX - 1) & 63));
+			}
+			count += Long.bitCount(word);
+		}
+
+		return count;
+	}
+
+
+	/**
+	 * @return number of black pixels in the columns [aFromX, aToX) of the rows [aFromY, aToY)
+	 */
+	public int countBlackInArea(int aFromX, int aToX, int aFromY, int aToY)
+	{
+		int count = 0;
+
+		for (int y = aFromY; y < aToY; y++)
+		{
+			count += countBlack(y, aFromX, aToX);
+		}
+
+		return count;
+	}
+
+
+	/**
+	 * @return number of black pixels in the rows [aFromY, aToY) of the column
+	 */
+	public int countBlackInColumn(int aX, int aFromY, int aToY)
+	{
+		int count = 0;
+		int wi = aX >>> 6;
+
+		for (int y = aFromY; y < aToY; y++)
+		{
+			count += (int)(mBits[y * mStride + wi] >>> aX) & 1;
+		}
+
+		return count;
+	}
+
+
+	/**
+	 * Returns the leftmost column in the range [aFromX, aToX) containing a black pixel within the rows [aFromY, aToY).
+	 *
+	 * @return the x coordinate or -1 if the area is white
+	 */
+	public int firstBlackColumn(int aFromX, int aToX, int aFromY, int aToY)
+	{
+		if (aFromX >= aToX || aFromY >= aToY)
+		{
+			return -1;
+		}
+
+		int firstWi = aFromX >>> 6;
+		int lastWi = (aToX - 1) >>> 6;
+
+		for (int wi = firstWi; wi <= lastWi; wi++)
+		{
+			long word = columnMask(wi, firstWi, lastWi, aFromX, aToX, aFromY, aToY);
+
+			if (word != 0)
+			{
+				return (wi << 6) + Long.numberOfTrailingZeros(word);
+			}
+		}
+
+		return -1;
+	}
+
+
+	/**
+	 * Returns the rightmost column in the range [aFromX, aToX) containing a black pixel within the rows [aFromY, aToY).
+	 *
+	 * @return the x coordinate or -1 if the area is white
+	 */
+	public int lastBlackColumn(int aFromX, int aToX, int aFromY, int aToY)
+	{
+		if (aFromX >= aToX || aFromY >= aToY)
+		{
+			return -1;
+		}
+
+		int firstWi = aFromX >>> 6;
+		int lastWi = (aToX - 1) >>> 6;
+
+		for (int wi = lastWi; wi >= firstWi; wi--)
+		{
+			long word = columnMask(wi, firstWi, lastWi, aFromX, aToX, aFromY, aToY);
+
+			if (word != 0)
+			{
+				return (wi << 6) + 63 - Long.numberOfLeadingZeros(word);
+			}
+		}
+
+		return -1;
+	}
+
+
+	private long columnMask(int aWordIndex, int aFirstWordIndex, int aLastWordIndex, int aFromX, int aToX, int aFromY, int aToY)
+	{
+		long mask = -1L;
+		if (aWordIndex == aFirstWordIndex)
+		{
+			mask &= -1L << aFromX;
+		}
+		if (aWordIndex == aLastWordIndex)
+		{
+			mask &= -1L >>> (63 - ((aToX - 1) & 63));
+		}
+
+		long word = 0;
+		for (int y = aFromY, i = aFromY * mStride + aWordIndex; y < aToY && (word & mask) != mask; y++, i += mStride)
+		{
+			word |= mBits[i];
+		}
+
+		return word & mask;
+	}
+
+
+	/**
+	 * @return approximate number of bytes used by the packed raster
+	 */
+	public long getMemoryUsage()
+	{
+		return 8L * mBits.length;
+	}
+}
@@ -0,0 +1,469 @@
+package org.terifan.ocr;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+
+/**
+ * Processes a sequence of pages in stages connected by bounded queues, each stage running on its own threads, so that
+ * different pages occupy different stages at the same time. Results are delivered in input order on the calling
+ * thread. The load of each stage is reported by getMetrics to help balance the number of threads per stage.
+ */
+public class PagePipeline
+{
+	public enum Stage
+	{
+		DECODE,
+		CONVERT,
+		DESKEW,
+		ERASE_LINES,
+		SEGMENT,
+		CLASSIFY
+	}
+
+	private final OCRModel mModel;
+	private final EnumMap<Stage, Integer> mParallelism;
+	private int mQueueCapacity;
+	private int mMaxInFlight;
+	private Resolver mResolver;
+	private Function<Page, Settings> mSettingsProvider;
+	private boolean mDeskew;
+	private double mEraseLinesMinInches;
+	private int mEraseLinesExtra;
+	private volatile StageWorker[] mWorkers;
+
+
+	public PagePipeline(OCRModel aModel)
+	{
+		mModel = aModel;
+		mParallelism = new EnumMap<>(Stage.class);
+		mQueueCapacity = 4;
+		mResolver = new SimpleResolver();
+		mSettingsProvider = aPage -> new Settings();
+
+		for (Stage stage : Stage.values())
+		{
+			mParallelism.put(stage, 1);
+		}
+
+		mParallelism.put(Stage.CLASSIFY, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+		mMaxInFlight = 4 * Stage.values().length;
+	}
+
+
+	public int getParallelism(Stage aStage)
+	{
+		return mParallelism.get(aStage);
+	}
+
+
+	/**
+	 * Sets the number of threads of a stage. Default is one thread for each stage except classification which uses
+	 * half of the available processors. More than one DECODE thread only helps when sources decode independently, the
+	 * pages of a MultiPageImageSource share one reader and are decoded one at a time whatever the parallelism.
+	 */
+	public void setParallelism(Stage aStage, int aThreadCount)
+	{
+		if (aThreadCount < 1)
+		{
+			throw new IllegalArgumentException("Thread count must be at least one: " + aThreadCount);
+		}
+
+		mParallelism.put(aStage, aThreadCount);
+	}
+
+
+	public int getQueueCapacity()
+	{
+		return mQueueCapacity;
+	}
+
+
+	/**
+	 * Sets the capacity of the queue in front of each stage. A stage waits when the queue of the next stage is full.
+	 * Default is 4.
+	 */
+	public void setQueueCapacity(int aQueueCapacity)
+	{
+		if (aQueueCapacity < 1)
+		{
+			throw new IllegalArgumentException("Queue capacity must be at least one: " + aQueueCapacity);
+		}
+
+		mQueueCapacity = aQueueCapacity;
+	}
+
+
+	public int getMaxInFlight()
+	{
+		return mMaxInFlight;
+	}
+
+
+	/**
+	 * Sets the maximum number of pages read but not yet consumed, including finished pages waiting for an earlier page
+	 * to be delivered. Default is four pages per stage.
+	 */
+	public void setMaxInFlight(int aMaxInFlight)
+	{
+		if (aMaxInFlight < 1)
+		{
+			throw new IllegalArgumentException("Max in-flight must be at least one: " + aMaxInFlight);
+		}
+
+		mMaxInFlight = aMaxInFlight;
+	}
+
+
+	/**
+	 * Sets the Resolver used to scan all pages, it's called concurrently and must be thread-safe. Default is a
+	 * SimpleResolver accepting all words.
+	 */
+	public void setResolver(Resolver aResolver)
+	{
+		mResolver = aResolver;
+	}
+
+
+	/**
+	 * Sets the function returning the Settings used to segment a page. Default returns new Settings for each page.
+	 */
+	public void setSettingsProvider(Function<Page, Settings> aSettingsProvider)
+	{
+		mSettingsProvider = aSettingsProvider;
+	}
+
+
+	/**
+	 * Enables the DESKEW stage calling Bitmap.adjustPageRotation. Disabled by default.
+	 */
+	public void setDeskew(boolean aDeskew)
+	{
+		mDeskew = aDeskew;
+	}
+
+
+	/**
+	 * Enables the ERASE_LINES stage calling Bitmap.eraseLines with the provided arguments. Disabled by default.
+	 *
+	 * @param aMinInches min length of line in inches or zero to disable the stage
+	 * @param aExtra extra pixels erased top, left, bottom and right
+	 */
+	public void setEraseLines(double aMinInches, int aExtra)
+	{
+		mEraseLinesMinInches = aMinInches;
+		mEraseLinesExtra = aExtra;
+	}
+
+
+	/**
+	 * Returns the load of each stage of the running or last completed process call, or an empty list if nothing has
+	 * been processed. Can be called from any thread.
+	 */
+	public ArrayList<StageMetrics> getMetrics()
+	{
+		ArrayList<StageMetrics> metrics = new ArrayList<>();
+		StageWorker[] workers = mWorkers;
+
+		if (workers != null)
+		{
+			long now = System.nanoTime();
+
+			for (StageWorker worker : workers)
+			{
+				metrics.add(worker.getMetrics(now));
+			}
+		}
+
+		return metrics;
+	}
+
+
+	public void process(Stream<? extends ImageSource> aSources, Consumer<BatchResult> aConsumer) throws InterruptedException
+	{
+		process(aSources.iterator(), aConsumer);
+	}
+
+
+	public void process(Iterable<? extends ImageSource> aSources, Consumer<BatchResult> aConsumer) throws InterruptedException
+	{
+		process(aSources.iterator(), aConsumer);
+	}
+
+
+	/**
+	 * Processes all sources and passes the result of each to the consumer in input order. Pages failing in any stage
+	 * skip the remaining stages and are reported with the exception without stopping the pipeline. An Error thrown by
+	 * any stage stops the pipeline and is rethrown by this method. Returns when all results have been consumed and all
+	 * stage threads have terminated.
+	 */
+	public void process(Iterator<? extends ImageSource> aSources, Consumer<BatchResult> aConsumer) throws InterruptedException
+	{
+		Stage[] stages = Stage.values();
+		StageWorker[] workers = new StageWorker[stages.length];
+		LinkedBlockingQueue<Job> completed = new LinkedBlockingQueue<>();
+
+		for (int i = stages.length; --i >= 0;)
+		{
+			workers[i] = new StageWorker(stages[i], mParallelism.get(stages[i]), new ArrayBlockingQueue<>(mQueueCapacity), i == stages.length - 1 ? completed : workers[i + 1].mQueue, completed);
+		}
+
+		mWorkers = workers;
+
+		for (StageWorker worker : workers)
+		{
+			worker.start();
+		}
+
+		HashMap<Integer, Job> pending = new HashMap<>();
+		int submitted = 0;
+		int[] delivered = new int[1];
+
+		try
+		{
+			while (aSources.hasNext())
+			{
+				while (submitted - delivered[0] >= mMaxInFlight)
+				{
+					deliver(completed.take(), pending, delivered, aConsumer);
+				}
+
+				workers[0].mQueue.put(new Job(submitted++, aSources.next()));
+			}
+
+			while (delivered[0] < submitted)
+			{
+				deliver(completed.take(), pending, delivered, aConsumer);
+			}
+		}
+		finally
+		{
+			for (StageWorker worker : workers)
+			{
+				worker.stop();
+			}
+
+			for (StageWorker worker : workers)
+			{
+				worker.awaitTermination();
+			}
+		}
+	}
+
+
+	/**
+	 * Adds a finished page to the pending pages and passes all pages following the last delivered page to the consumer.
+	 * Rethrows an Error thrown by a stage.
+	 */
+	private void deliver(Job aJob, HashMap<Integer, Job> aPending, int[] aDelivered, Consumer<BatchResult> aConsumer)
+	{
+		if (aJob.mFatal != null)
+		{
+			throw aJob.mFatal;
+		}
+
+		aPending.put(aJob.mIndex, aJob);
+
+		for (Job job; (job = aPending.remove(aDelivered[0])) != null;)
+		{
+			aDelivered[0]++;
+			aConsumer.accept(new BatchResult(job.mIndex, job.mSource, job.mScanResult, job.mError));
+		}
+	}
+
+
+	/**
+	 * Performs the work of a stage on a page.
+	 */
+	private void execute(Stage aStage, Job aJob) throws Exception
+	{
+		switch (aStage)
+		{
+			case DECODE:
+				aJob.mImage = aJob.mSource.read();
+				break;
+			case CONVERT:
+				aJob.mBitmap = new Bitmap(aJob.mImage);
+				aJob.mImage = null;
+				break;
+			case DESKEW:
+				if (mDeskew)
+				{
+					aJob.mBitmap.adjustPageRotation();
+				}
+				break;
+			case ERASE_LINES:
+				if (mEraseLinesMinInches > 0)
+				{
+					aJob.mBitmap.eraseLines(mEraseLinesMinInches, mEraseLinesExtra);
+				}
+				break;
+			case SEGMENT:
+				Page page = new Page(aJob.mBitmap);
+				aJob.mSession = new OCRSession(mModel);
+				aJob.mSession.loadPage(page, mSettingsProvider.apply(page));
+				aJob.mBitmap = null;
+				break;
+			case CLASSIFY:
+				aJob.mSession.scan(0, 0, 1, 1, mResolver);
+				aJob.mSession.detachScanResult();
+				aJob.mScanResult = aJob.mSession.getScanResult();
+				aJob.mSession = null;
+				break;
+			default:
+				throw new IllegalStateException();
+		}
+	}
+
+
+	/**
+	 * The threads of a stage taking pages from the queue of the stage and putting them in the queue of the next stage. A
+	 * page failing with an Error is put directly in the completed queue for the calling thread to rethrow.
+	 */
+	private class StageWorker
+	{
+		final Stage mStage;
+		final int mThreadCount;
+		final BlockingQueue<Job> mQueue;
+		final BlockingQueue<Job> mOutput;
+		final BlockingQueue<Job> mCompleted;
+		final AtomicLong mBusyTime;
+		final AtomicLong mProcessedCount;
+		ExecutorService mExecutor;
+		volatile long mStartTime;
+		volatile long mStopTime;
+
+
+		StageWorker(Stage aStage, int aThreadCount, BlockingQueue<Job> aQueue, BlockingQueue<Job> aOutput, BlockingQueue<Job> aCompleted)
+		{
+			mStage = aStage;
+			mThreadCount = aThreadCount;
+			mQueue = aQueue;
+			mOutput = aOutput;
+			mCompleted = aCompleted;
+			mBusyTime = new AtomicLong();
+			mProcessedCount = new AtomicLong();
+		}
+
+
+		void start()
+		{
+			mStartTime = System.nanoTime();
+			mExecutor = Executors.newFixedThreadPool(mThreadCount);
+
+			for (int i = 0; i < mThreadCount; i++)
+			{
+				mExecutor.execute(this::run);
+			}
+		}
+
+
+		void stop()
+		{
+			mExecutor.shutdownNow();
+			mStopTime = System.nanoTime();
+		}
+
+
+		/**
+		 * Waits for the threads of the stage to finish the page they are working on. Threads blocked on a queue exit
+		 * immediately when stopped.
+		 */
+		void awaitTermination()
+		{
+			try
+			{
+				mExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+
+		private void run()
+		{
+			try
+			{
+				for (;;)
+				{
+					Job job = mQueue.take();
+					long time = System.nanoTime();
+
+					if (job.mError == null)
+					{
+						try
+						{
+							execute(mStage, job);
+						}
+						catch (Exception e)
+						{
+							job.mError = e;
+						}
+						catch (Error e)
+						{
+							job.mFatal = e;
+						}
+					}
+
+					mBusyTime.addAndGet(System.nanoTime() - time);
+					mProcessedCount.incrementAndGet();
+
+					(job.mFatal == null ? mOutput : mCompleted).put(job);
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// pipeline stopped
+			}
+		}
+
+
+		StageMetrics getMetrics(long aTime)
+		{
+			long elapsed = (mStopTime != 0 ? mStopTime : aTime) - mStartTime;
+			double utilization = elapsed <= 0 ? 0 : Math.min(1, mBusyTime.get() / (double)elapsed / mThreadCount);
+
+			int depth = mQueue.size();
+
+			return new StageMetrics(mStage, mThreadCount, depth, depth + mQueue.remainingCapacity(), mProcessedCount.get(), utilization);
+		}
+	}
+
+
+	/**
+	 * A page moving through the stages. Each stage replaces the data it consumes with the data it produces.
+	 */
+	private static class Job
+	{
+		final int mIndex;
+		final ImageSource mSource;
+		BufferedImage mImage;
+		Bitmap mBitmap;
+		OCRSession mSession;
+		ArrayList<TextBox> mScanResult;
+		Exception mError;
+		Error mFatal;
+
+
+		Job(int aIndex, ImageSource aSource)
+		{
+			mIndex = aIndex;
+			mSource = aSource;
+		}
+	}
+}
@@ -2,6 +2,9 @@ package org.terifan.ocr;
 
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 
 class PageSegmenter
@@ -23,6 +26,18 @@ class PageSegmenter
 
 
 	public ArrayList<TextBox> scanPage(double aFromX, double aFromY, double aToX, double aToY, Page aPage, Settings aSettings)
+	{
+		return scanPage(aFromX, aFromY, aToX, aToY, aPage, aSettings, null);
+	}
+
+
+	/**
+	 * Find all words on the page.
+	 *
+	 * @param aPool pool used to segment horizontal bands of the page and to split words concurrently or null to run
+	 * on the calling thread. The result is the same in both cases.
+	 */
+	public ArrayList<TextBox> scanPage(double aFromX, double aFromY, double aToX, double aToY, Page aPage, Settings aSettings, ForkJoinPool aPool)
 	{
 		mPage = aPage;
 		mSettings = aSettings;
@@ -30,67 +45,62 @@ class PageSegmenter
 		mCharacterRectangles = new ArrayList<>();
 		mWordRectangles = new ArrayList<>();
 
-		findCharacterRectangles(aFromX, aFromY, aToX, aToY);
+		findCharacterRectangles(aFromX, aFromY, aToX, aToY, aPool);
 
 		findWordRectangles();
 
-		new WordSegmenter().scanPage(aPage, aSettings, mWordRectangles);
+		new WordSegmenter().scanPage(aPage, aSettings, mWordRectangles, aPool);
 
 		return mWordRectangles;
 	}
 
 
 	/**
-	 * Combine characters into words
+	 * Combine characters into words. Each character has a sensor area extending to the sides and a word grows by the
+	 * first remaining character (in list order) whose sensor intersects the sensor of the word.
 	 */
 	private void findWordRectangles()
 	{
-		Rectangle r = new Rectangle();
 		Rectangle q = new Rectangle();
 
 		int sensorSize = (int)mSettings.getCharacterSpacing();
 
-		while (!mCharacterRectangles.isEmpty())
+		ArrayList<Rectangle> sensors = new ArrayList<>(mCharacterRectangles.size());
+		for (Rectangle r : mCharacterRectangles)
 		{
-			TextBox textBox = new TextBox(mCharacterRectangles.remove(0));
-			mWordRectangles.add(textBox);
+			sensors.add(getSensor(r, sensorSize, new Rectangle()));
+		}
+
+		RectangleGrid grid = new RectangleGrid(sensors, Math.max(mSettings.getMaxSymbolHeight(), sensorSize));
 
-			for (boolean stop = false; !stop;)
+		for (int seed = 0; seed < mCharacterRectangles.size(); seed++)
+		{
+			if (grid.isRemoved(seed))
 			{
-				q.setBounds(textBox);
+				continue;
+			}
 
-				int sw = sensorSize;
-				int sh = q.height / 2;
+			grid.remove(seed);
 
-				q.x -= sw / 2;
-				q.y += q.height / 2 - sh / 2;
-				q.width += sw;
-				q.height = sh;
+			TextBox textBox = new TextBox(mCharacterRectangles.get(seed));
+			mWordRectangles.add(textBox);
 
-				stop = true;
+			for (;;)
+			{
+				int i = grid.findFirstIntersecting(getSensor(textBox, sensorSize, q));
 
-				for (int i = 0; i < mCharacterRectangles.size(); i++)
+				if (i == -1)
 				{
-					r.setBounds(mCharacterRectangles.get(i));
-
-					sw = sensorSize;
-					sh = r.height / 2;
-
-					r.x -= sw / 2;
-					r.y += r.height / 2 - sh / 2;
-					r.width += sw;
-					r.height = sh;
-
-					if (q.intersects(r))
-					{
-						textBox.add(mCharacterRectangles.remove(i));
-						stop = false;
-						break;
-					}
+					break;
 				}
+
+				grid.remove(i);
+				textBox.add(mCharacterRectangles.get(i));
 			}
 		}
 
+		mCharacterRectangles.clear();
+
 		// remove text boxes that violate size requirements
 		for (int i = mWordRectangles.size(); --i >= 0;)
 		{
@@ -104,19 +114,95 @@ class PageSegmenter
 	}
 
 
-	private void findCharacterRectangles(double aFromX, double aFromY, double aToX, double aToY)
+	private void findCharacterRectangles(double aFromX, double aFromY, double aToX, double aToY, ForkJoinPool aPool)
 	{
 		int minX = (int)(aFromX * mPage.getWidth()) + 1;
 		int minY = (int)(aFromY * mPage.getHeight()) + 1;
 		int maxX = (int)(aToX * mPage.getWidth()) - 1;
 		int maxY = (int)(aToY * mPage.getHeight()) - 1;
 
-		for (int iy = minY; iy < maxY; iy++)
+		PackedBitmap packed = mPage.getBitmap().getPackedBitmap();
+
+		if (mSettings.isComponentLabeling())
+		{
+			for (ConnectedComponent component : new ComponentLabeler(packed).label(minX, minY, maxX, maxY, aPool, 0))
+			{
+				int w = component.getMaxX() - component.getMinX();
+				int h = component.getMaxY() - component.getMinY();
+
+				if (isValidSymbolSize(w, h))
+				{
+					mCharacterRectangles.add(new Rectangle(component.getMinX(), component.getMinY(), w, h));
+				}
+			}
+			return;
+		}
+
+		// each glyph start pixel is processed independently so the rows can be split into bands as long as the
+		// results are concatenated in order, the same glyph found from several start pixels is reported once
+		LinkedHashSet<Rectangle> rectangles = new LinkedHashSet<>();
+
+		if (aPool == null)
+		{
+			ArrayList<Rectangle> band = new ArrayList<>();
+			findCharacterRectangles(packed, minX, minY, maxX, maxY, band);
+			rectangles.addAll(band);
+		}
+		else
+		{
+			int bandHeight = Math.max(mSettings.getMaxSymbolHeight(), (maxY - minY) / (4 * aPool.getParallelism()) + 1);
+
+			ArrayList<ForkJoinTask<ArrayList<Rectangle>>> tasks = new ArrayList<>();
+
+			for (int y = minY; y < maxY; y += bandHeight)
+			{
+				int y0 = y;
+				int y1 = Math.min(y + bandHeight, maxY);
+
+				tasks.add(aPool.submit(() ->
+				{
+					ArrayList<Rectangle> band = new ArrayList<>();
+					findCharacterRectangles(packed, minX, y0, maxX, y1, band);
+					return band;
+				}));
+			}
+
+			for (ForkJoinTask<ArrayList<Rectangle>> task : tasks)
+			{
+				rectangles.addAll(task.join());
+			}
+		}
+
+		mCharacterRectangles.addAll(rectangles);
+	}
+
+
+	/**
+	 * Grow a rectangle from each black pixel with a white pixel above it found within the area until the rectangle
+	 * encloses a symbol.
+	 */
+	private void findCharacterRectangles(PackedBitmap aPacked, int aFromX, int aFromY, int aToX, int aToY, ArrayList<Rectangle> aOutput)
+	{
+		for (int iy = aFromY; iy < aToY; iy++)
 		{
-			for (int ix = minX; ix < maxX; ix++)
+			for (int wi = aFromX >>> 6, lastWi = (aToX - 1) >>> 6; aFromX < aToX && wi <= lastWi; wi++)
 			{
-				if (mPage.isBlack(ix, iy) && !mPage.isBlack(ix, iy - 1))
+				// black pixels with a white pixel above
+				long edges = aPacked.getWord(iy, wi) & ~aPacked.getWord(iy - 1, wi);
+
+				if (wi == aFromX >>> 6)
+				{
+					edges &= -1L << aFromX;
+				}
+				if (wi == lastWi)
 				{
+					edges &= -1L >>> (63 - ((aToX - 1) & 63));
+				}
+
+				for (; edges != 0; edges &= edges - 1)
+				{
+					int ix = (wi << 6) + Long.numberOfTrailingZeros(edges);
+
 					int x = ix;
 					int y = iy;
 					int w = 2;
@@ -180,14 +266,9 @@ class PageSegmenter
 						}
 					}
 
-					if (w >= mSettings.getMinSymbolWidth() && w <= mSettings.getMaxSymbolWidth() && h >= mSettings.getMinSymbolHeight() && h <= mSettings.getMaxSymbolHeight())
+					if (isValidSymbolSize(w, h))
 					{
-						Rectangle r = new Rectangle(x, y, w, h);
-
-						if (!mCharacterRectangles.contains(r))
-						{
-							mCharacterRectangles.add(r);
-						}
+						aOutput.add(new Rectangle(x, y, w, h));
 					}
 					else
 					{
@@ -199,16 +280,65 @@ class PageSegmenter
 	}
 
 
+	private static Rectangle getSensor(Rectangle aRectangle, int aSensorSize, Rectangle aSensor)
+	{
+		aSensor.setBounds(aRectangle);
+
+		int sw = aSensorSize;
+		int sh = aSensor.height / 2;
+
+		aSensor.x -= sw / 2;
+		aSensor.y += aSensor.height / 2 - sh / 2;
+		aSensor.width += sw;
+		aSensor.height = sh;
+
+		return aSensor;
+	}
+
+
+	/**
+	 * Return true if the size is within the limits. The width and height exclude the last pixel of the symbol.
+	 */
+	private boolean isValidSymbolSize(int w, int h)
+	{
+		return w >= mSettings.getMinSymbolWidth() && w <= mSettings.getMaxSymbolWidth() && h >= mSettings.getMinSymbolHeight() && h <= mSettings.getMaxSymbolHeight();
+	}
+
+
 	private int scanBounds(int x, int y, int w, int h)
+	{
+		w = Math.min(w, mPage.getWidth() - x - 1);
+		h = Math.min(h, mPage.getHeight() - y - 1);
+
+		if (x < 0 || y < 0 || w < 0 || h < 0)
+		{
+			return scanBoundsUnchecked(x, y, w, h);
+		}
+
+		PackedBitmap packed = mPage.getBitmap().getPackedBitmap();
+
+		boolean top = packed.hasBlack(y, x, x + w);
+		boolean bottom = packed.hasBlack(y + h, x, x + w);
+		boolean left = false;
+		boolean right = false;
+
+		for (int i = 0; i < h && !(left && right); i++)
+		{
+			left |= packed.isBlack(x, y + i);
+			right |= packed.isBlack(x + w, y + i);
+		}
+
+		return (top ? SCAN_TOP : 0) + (right ? SCAN_RIGHT : 0) + (bottom ? SCAN_BOTTOM : 0) + (left ? SCAN_LEFT : 0);
+	}
+
+
+	private int scanBoundsUnchecked(int x, int y, int w, int h)
 	{
 		boolean top = false;
 		boolean right = false;
 		boolean bottom = false;
 		boolean left = false;
 
-		w = Math.min(w, mPage.getWidth() - x - 1);
-		h = Math.min(h, mPage.getHeight() - y - 1);
-
 		for (int i = 0; i < w; i++)
 		{
 			if (!top && mPage.isBlack(x + i, y))
@@ -0,0 +1,171 @@
+package org.terifan.ocr;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+
+/**
+ * A uniform grid over a fixed list of rectangles. Each cell lists, in ascending order, the indices of all rectangles
+ * overlapping it. Rectangles can be removed but not added after construction.
+ */
+class RectangleGrid
+{
+	private final Rectangle[] mRectangles;
+	private final boolean[] mRemoved;
+	private final int mCellSize;
+	private final int mOriginX;
+	private final int mOriginY;
+	private final int mColumns;
+	private final int mRows;
+	private final int[] mCellStart;
+	private final int[] mCellEntries;
+
+
+	public RectangleGrid(List<Rectangle> aRectangles, int aCellSize)
+	{
+		mRectangles = aRectangles.toArray(new Rectangle[aRectangles.size()]);
+		mRemoved = new boolean[mRectangles.length];
+		mCellSize = Math.max(1, aCellSize);
+
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+
+		for (Rectangle r : mRectangles)
+		{
+			if (!r.isEmpty())
+			{
+				minX = Math.min(minX, r.x);
+				minY = Math.min(minY, r.y);
+				maxX = Math.max(maxX, r.x + r.width - 1);
+				maxY = Math.max(maxY, r.y + r.height - 1);
+			}
+		}
+
+		if (minX > maxX)
+		{
+			minX = maxX = minY = maxY = 0;
+		}
+
+		mOriginX = minX;
+		mOriginY = minY;
+		mColumns = (maxX - minX) / mCellSize + 1;
+		mRows = (maxY - minY) / mCellSize + 1;
+		mCellStart = new int[mColumns * mRows + 1];
+
+		for (int i = 0; i < mRectangles.length; i++)
+		{
+			visitCells(i, null);
+		}
+
+		for (int i = 1; i < mCellStart.length; i++)
+		{
+			mCellStart[i] += mCellStart[i - 1];
+		}
+
+		mCellEntries = new int[mCellStart[mCellStart.length - 1]];
+		int[] fill = mCellStart.clone();
+
+		for (int i = 0; i < mRectangles.length; i++)
+		{
+			visitCells(i, fill);
+		}
+	}
+
+
+	/**
+	 * Count the cells overlapped by a rectangle or, when a fill pointer is provided, add the index to them.
+	 */
+	private void visitCells(int aIndex, int[] aFill)
+	{
+		Rectangle r = mRectangles[aIndex];
+
+		if (r.isEmpty())
+		{
+			return;
+		}
+
+		int cx0 = (r.x - mOriginX) / mCellSize;
+		int cy0 = (r.y - mOriginY) / mCellSize;
+		int cx1 = (r.x + r.width - 1 - mOriginX) / mCellSize;
+		int cy1 = (r.y + r.height - 1 - mOriginY) / mCellSize;
+
+		for (int cy = cy0; cy <= cy1; cy++)
+		{
+			for (int cx = cx0; cx <= cx1; cx++)
+			{
+				if (aFill == null)
+				{
+					mCellStart[cy * mColumns + cx + 1]++;
+				}
+				else
+				{
+					mCellEntries[aFill[cy * mColumns + cx]++] = aIndex;
+				}
+			}
+		}
+	}
+
+
+	public boolean isRemoved(int aIndex)
+	{
+		return mRemoved[aIndex];
+	}
+
+
+	public void remove(int aIndex)
+	{
+		mRemoved[aIndex] = true;
+	}
+
+
+	/**
+	 * Return the lowest index of a remaining rectangle intersecting the area or -1 if none exists. Intersection follows
+	 * the rules of Rectangle.intersects.
+	 */
+	public int findFirstIntersecting(Rectangle aArea)
+	{
+		if (aArea.isEmpty())
+		{
+			return -1;
+		}
+
+		if (aArea.x + aArea.width - 1 < mOriginX || aArea.y + aArea.height - 1 < mOriginY)
+		{
+			return -1;
+		}
+
+		int cx0 = Math.max((aArea.x - mOriginX) / mCellSize, 0);
+		int cy0 = Math.max((aArea.y - mOriginY) / mCellSize, 0);
+		int cx1 = Math.min((aArea.x + aArea.width - 1 - mOriginX) / mCellSize, mColumns - 1);
+		int cy1 = Math.min((aArea.y + aArea.height - 1 - mOriginY) / mCellSize, mRows - 1);
+
+		int best = Integer.MAX_VALUE;
+
+		for (int cy = cy0; cy <= cy1; cy++)
+		{
+			for (int cx = cx0; cx <= cx1; cx++)
+			{
+				int cell = cy * mColumns + cx;
+
+				for (int i = mCellStart[cell], end = mCellStart[cell + 1]; i < end; i++)
+				{
+					int index = mCellEntries[i];
+
+					if (index >= best)
+					{
+						break;
+					}
+					if (!mRemoved[index] && aArea.intersects(mRectangles[index]))
+					{
+						best = index;
+						break;
+					}
+				}
+			}
+		}
+
+		return best == Integer.MAX_VALUE ? -1 : best;
+	}
+}
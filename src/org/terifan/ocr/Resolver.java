@@ -1,9 +1,38 @@
 package org.terifan.ocr;
 
+import java.util.BitSet;
+import java.util.List;
+
 
 public interface Resolver
 {
 	public boolean acceptSymbol(Page aPage, TextBox aTextBox, Symbol aSymbol);
 
 	public boolean acceptWord(Page aPage, TextBox aTextBox);
-}
\ No newline at end of file
+
+	/**
+	 * Returns the indices of the symbols accepted for a TextBox. The default implementation clears the buffer and sets
+	 * the symbols accepted by acceptSymbol. Implementations whose result doesn't depend on the page or TextBox may
+	 * return a cached set instead. The returned set must not be modified by the caller.
+	 *
+	 * @param aSymbols
+	 *   the learned symbols, the list is replaced and never modified when more symbols are learned
+	 * @param aBuffer
+	 *   a set owned by the calling thread, reused for every TextBox the thread classifies
+	 */
+	public default BitSet getAdmission(Page aPage, TextBox aTextBox, List<Symbol> aSymbols, BitSet aBuffer)
+	{
+		BitSet admission = aBuffer;
+		admission.clear();
+
+		for (int i = 0; i < aSymbols.size(); i++)
+		{
+			if (acceptSymbol(aPage, aTextBox, aSymbols.get(i)))
+			{
+				admission.set(i);
+			}
+		}
+
+		return admission;
+	}
+}
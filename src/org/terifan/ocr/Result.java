@@ -1,6 +1,10 @@
 package org.terifan.ocr;
 
 
+/**
+ * A learned symbol matched to a glyph. The score is the distance between the features of the glyph and the symbol, so
+ * a lower score is a better match and zero is an exact match. Results sort best first.
+ */
 public class Result implements Comparable<Result>
 {
 	protected Symbol mSymbol;
@@ -33,6 +37,15 @@ public class Result implements Comparable<Result>
 	}
 
 
+	/**
+	 * Returns the distance to the symbol, lower is better.
+	 */
+	public double getScore()
+	{
+		return mScore;
+	}
+
+
 	@Override
 	public int compareTo(Result aOther)
 	{
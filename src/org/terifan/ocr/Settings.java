@@ -10,6 +10,7 @@ public class Settings
 	private int mMaxSymbolHeight;
 	private int mMinSymbolHeight;
 	private int mMaxLineWidth;
+	private boolean mComponentLabeling;
 
 
 	public Settings()
@@ -111,4 +112,20 @@ public class Settings
 	{
 		mCharacterSpacing = aFraction * aPage.getWidth() / 100;
 	}
+
+
+	public boolean isComponentLabeling()
+	{
+		return mComponentLabeling;
+	}
+
+
+	/**
+	 * Find characters using connected component labeling instead of growing a rectangle from each glyph start pixel.
+	 * Component labeling visits each pixel once while the default method may scan the same glyph many times.
+	 */
+	public void setComponentLabeling(boolean aComponentLabeling)
+	{
+		mComponentLabeling = aComponentLabeling;
+	}
 }
@@ -42,4 +42,14 @@ public class SimpleLetterResolver extends SimpleResolver
 
 		return mLetters && Character.isLetter(c) || mDigits && Character.isDigit(c);
 	}
+
+
+	/**
+	 * The admission only depends on the character of the symbol.
+	 */
+	@Override
+	protected boolean isAdmissionCacheable()
+	{
+		return true;
+	}
 }
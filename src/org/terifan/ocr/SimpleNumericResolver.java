@@ -14,4 +14,14 @@ public class SimpleNumericResolver extends SimpleResolver
 	{
 		return Character.isDigit(aSymbol.getCharacter().charAt(0));
 	}
+
+
+	/**
+	 * The admission only depends on the character of the symbol.
+	 */
+	@Override
+	protected boolean isAdmissionCacheable()
+	{
+		return true;
+	}
 }
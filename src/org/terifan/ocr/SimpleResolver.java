@@ -1,10 +1,14 @@
 package org.terifan.ocr;
 
+import java.util.BitSet;
+import java.util.List;
+
 
 public class SimpleResolver implements Resolver
 {
 	protected int mMaxErrors;
 	protected String [] mWords;
+	private volatile Admission mAdmission;
 
 
 	public SimpleResolver()
@@ -19,6 +23,9 @@ public class SimpleResolver implements Resolver
 	}
 
 
+	/**
+	 * Accepts all symbols.
+	 */
 	@Override
 	public boolean acceptSymbol(Page aPage, TextBox aTextBox, Symbol aSymbol)
 	{
@@ -26,6 +33,40 @@ public class SimpleResolver implements Resolver
 	}
 
 
+	/**
+	 * Returns true if acceptSymbol only considers the Symbol, allowing getAdmission to compute the admitted symbols
+	 * once. Default is false, subclasses depending on the Page or TextBox must not return true.
+	 */
+	protected boolean isAdmissionCacheable()
+	{
+		return false;
+	}
+
+
+	/**
+	 * Returns the admitted symbols, computed the first time this resolver sees the list of symbols if the admission is
+	 * cacheable or for every TextBox otherwise.
+	 */
+	@Override
+	public BitSet getAdmission(Page aPage, TextBox aTextBox, List<Symbol> aSymbols, BitSet aBuffer)
+	{
+		if (!isAdmissionCacheable())
+		{
+			return Resolver.super.getAdmission(aPage, aTextBox, aSymbols, aBuffer);
+		}
+
+		Admission admission = mAdmission;
+
+		if (admission == null || admission.mSymbols != aSymbols)
+		{
+			admission = new Admission(aSymbols, Resolver.super.getAdmission(aPage, aTextBox, aSymbols, new BitSet(aSymbols.size())));
+			mAdmission = admission;
+		}
+
+		return admission.mAdmitted;
+	}
+
+
 	@Override
 	public boolean acceptWord(Page aPage, TextBox aTextBox)
 	{
@@ -78,7 +119,7 @@ public class SimpleResolver implements Resolver
 			aTemplate = aTemplate.substring(0, aTemplate.length() - 1);
 		}
 
-		int err = compareWords(aTemplate, aCompare, 0, 0, aMaxErrors, 0, trimCompare);
+		int err = getEditDistance(aTemplate, aCompare, aMaxErrors, trimCompare);
 		if (debug)
 		{
 			System.out.println("error=" + err);
@@ -88,33 +129,95 @@ public class SimpleResolver implements Resolver
 	}
 
 
-	private static int compareWords(String aTemplate, String aCompare, int aTemplateOffset, int aCompareOffset, int aMaxErrors, int aError, boolean aTrimCompare)
+	/**
+	 * Returns the Levenshtein distance between the words, or aMaxErrors + 1 if the distance is larger. A carriage return
+	 * in the template matches any character. When aTrimCompare is set the template only has to match the beginning of
+	 * the compared word. Only cells of the distance matrix within aMaxErrors of the diagonal are computed.
+	 */
+	private static int getEditDistance(String aTemplate, String aCompare, int aMaxErrors, boolean aTrimCompare)
 	{
-		for (; aTemplateOffset < aTemplate.length() && aCompareOffset < aCompare.length(); aTemplateOffset++, aCompareOffset++)
+		int m = aTemplate.length();
+		int n = aCompare.length();
+		int limit = aMaxErrors + 1;
+
+		if (m > n + aMaxErrors || !aTrimCompare && n > m + aMaxErrors)
 		{
-			char t = aTemplate.charAt(aTemplateOffset);
-			if (t != '\r' && t != aCompare.charAt(aCompareOffset))
-			{
-				aError++;
+			return limit;
+		}
+
+		int[] prev = new int[n + 1];
+		int[] curr = new int[n + 1];
+
+		for (int j = 0; j <= n; j++)
+		{
+			prev[j] = Math.min(j, limit);
+		}
+
+		for (int i = 1; i <= m; i++)
+		{
+			int from = Math.max(1, i - aMaxErrors);
+			int to = Math.min(n, i + aMaxErrors);
+			char t = aTemplate.charAt(i - 1);
 
-				if (aError > aMaxErrors)
+			curr[from - 1] = from == 1 ? Math.min(i, limit) : limit;
+			int rowMin = curr[from - 1];
+
+			for (int j = from; j <= to; j++)
+			{
+				int d;
+				if (t == '\r' || t == aCompare.charAt(j - 1))
+				{
+					d = prev[j - 1];
+				}
+				else
 				{
-					return aError;
+					d = Math.min(1 + Math.min(prev[j - 1], Math.min(prev[j], curr[j - 1])), limit);
 				}
 
-				int e1 = compareWords(aTemplate, aCompare, aTemplateOffset + 1, aCompareOffset, aMaxErrors, aError, aTrimCompare);
-				int e2 = compareWords(aTemplate, aCompare, aTemplateOffset, aCompareOffset + 1, aMaxErrors, aError, aTrimCompare);
-				int e3 = compareWords(aTemplate, aCompare, aTemplateOffset + 1, aCompareOffset + 1, aMaxErrors, aError, aTrimCompare);
+				curr[j] = d;
+				rowMin = Math.min(rowMin, d);
+			}
+
+			if (to < n)
+			{
+				curr[to + 1] = limit;
+			}
 
-				return Math.min(e1, Math.min(e2, e3));
+			if (rowMin >= limit)
+			{
+				return limit;
 			}
+
+			int[] tmp = prev;
+			prev = curr;
+			curr = tmp;
+		}
+
+		if (!aTrimCompare)
+		{
+			return prev[n];
 		}
 
-		if (aTrimCompare && aTemplateOffset == aTemplate.length())
+		int err = limit;
+		for (int j = Math.max(0, m - aMaxErrors), to = Math.min(n, m + aMaxErrors); j <= to; j++)
 		{
-			return aError;
+			err = Math.min(err, prev[j]);
 		}
 
-		return aError + Math.abs((aTemplate.length() - aTemplateOffset) - (aCompare.length() - aCompareOffset));
+		return err;
+	}
+
+
+	private static class Admission
+	{
+		final List<Symbol> mSymbols;
+		final BitSet mAdmitted;
+
+
+		Admission(List<Symbol> aSymbols, BitSet aAdmitted)
+		{
+			mSymbols = aSymbols;
+			mAdmitted = aAdmitted;
+		}
 	}
 }
\ No newline at end of file
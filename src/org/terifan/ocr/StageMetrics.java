@@ -0,0 +1,81 @@
+package org.terifan.ocr;
+
+
+/**
+ * A snapshot of the load of one stage of a PagePipeline.
+ */
+public class StageMetrics
+{
+	private final PagePipeline.Stage mStage;
+	private final int mParallelism;
+	private final int mQueueDepth;
+	private final int mQueueCapacity;
+	private final long mProcessedCount;
+	private final double mUtilization;
+
+
+	StageMetrics(PagePipeline.Stage aStage, int aParallelism, int aQueueDepth, int aQueueCapacity, long aProcessedCount, double aUtilization)
+	{
+		mStage = aStage;
+		mParallelism = aParallelism;
+		mQueueDepth = aQueueDepth;
+		mQueueCapacity = aQueueCapacity;
+		mProcessedCount = aProcessedCount;
+		mUtilization = aUtilization;
+	}
+
+
+	public PagePipeline.Stage getStage()
+	{
+		return mStage;
+	}
+
+
+	/**
+	 * @return number of threads of the stage
+	 */
+	public int getParallelism()
+	{
+		return mParallelism;
+	}
+
+
+	/**
+	 * @return number of pages waiting in the input queue of the stage
+	 */
+	public int getQueueDepth()
+	{
+		return mQueueDepth;
+	}
+
+
+	public int getQueueCapacity()
+	{
+		return mQueueCapacity;
+	}
+
+
+	/**
+	 * @return number of pages the stage has finished
+	 */
+	public long getProcessedCount()
+	{
+		return mProcessedCount;
+	}
+
+
+	/**
+	 * @return fraction of the time the threads of the stage have been working since processing started, 0 to 1
+	 */
+	public double getUtilization()
+	{
+		return mUtilization;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("%s[threads=%d,queue=%d/%d,processed=%d,utilization=%.2f]", mStage, mParallelism, mQueueDepth, mQueueCapacity, mProcessedCount, mUtilization);
+	}
+}
@@ -1,27 +1,30 @@
 package org.terifan.ocr;
 
 import java.awt.Insets;
-import java.awt.Polygon;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.function.Supplier;
 
 
 public class Symbol
 {
 	private Bitmap mBitmap;
+	private boolean[] mMatrix;
+	private int mMatrixSize;
 	protected Insets mBorders;
 	protected String mFontName;
 	protected String mCharacter;
 	protected TextBox mTextBox;
 	protected double [][] mContour; // 8 orientations, pixel offset
 	protected int [][] mSlopes; // 8 orientations, pixel offset
-	protected Polygon [][] mCurvature; // 8 orientations
+	protected int [][] mCurvature; // 8 orientations, triangles stored as x0, y0, x1, y1, x2, y2
 	protected int [][] mCurvatureSlopes;
 	protected double [][][] mCurvatureVector; // 8 orientations, 2 types (inclining/declining), 3 zones (upper/center/lower)
 	protected int [][] mClosestPixel;
 	protected double mCurvatureWeight;
 	protected String mDefCharacter;
 	protected BufferedImage mSymbolBitmap;
-	String[][] mSlopesX;
+	private Supplier<BufferedImage> mSymbolBitmapRenderer;
 	int[][] mSlopes2;
 
 
@@ -31,21 +34,114 @@ public class Symbol
 	}
 
 
+	/**
+	 * Returns a copy of this symbol sharing its features. Replacing the bitmaps of the copy doesn't affect this symbol.
+	 */
+	synchronized Symbol copy()
+	{
+		Symbol symbol = new Symbol(mTextBox);
+		symbol.mBitmap = mMatrix == null ? mBitmap : null;
+		symbol.mMatrix = mMatrix;
+		symbol.mMatrixSize = mMatrixSize;
+		symbol.mBorders = mBorders;
+		symbol.mFontName = mFontName;
+		symbol.mCharacter = mCharacter;
+		symbol.mContour = mContour;
+		symbol.mSlopes = mSlopes;
+		symbol.mCurvature = mCurvature;
+		symbol.mCurvatureSlopes = mCurvatureSlopes;
+		symbol.mCurvatureVector = mCurvatureVector;
+		symbol.mClosestPixel = mClosestPixel;
+		symbol.mCurvatureWeight = mCurvatureWeight;
+		symbol.mDefCharacter = mDefCharacter;
+		symbol.mSymbolBitmap = mSymbolBitmap;
+		symbol.mSymbolBitmapRenderer = mSymbolBitmapRenderer;
+		symbol.mSlopes2 = mSlopes2;
+
+		return symbol;
+	}
+
+
 	public String getFontName()
 	{
 		return mFontName;
 	}
 
 
-	public Bitmap getBitmap()
+	/**
+	 * Returns the resampled symbol as a Bitmap. The Bitmap is created from the matrix when first requested.
+	 */
+	public synchronized Bitmap getBitmap()
 	{
+		if (mBitmap == null && mMatrix != null)
+		{
+			BufferedImage image = new BufferedImage(mMatrixSize, mMatrixSize, BufferedImage.TYPE_BYTE_GRAY);
+			byte[] raster = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+
+			for (int i = 0; i < raster.length; i++)
+			{
+				raster[i] = mMatrix[i] ? Bitmap.BLACK : Bitmap.WHITE;
+			}
+
+			mBitmap = new Bitmap(image);
+		}
+
 		return mBitmap;
 	}
 
 
-	public void setBitmap(Bitmap aBitmap)
+	public synchronized void setBitmap(Bitmap aBitmap)
 	{
 		mBitmap = aBitmap;
+		mMatrix = new boolean[aBitmap.getWidth() * aBitmap.getHeight()];
+		mMatrixSize = aBitmap.getWidth();
+
+		for (int y = 0, i = 0; y < aBitmap.getHeight(); y++)
+		{
+			for (int x = 0; x < mMatrixSize; x++, i++)
+			{
+				mMatrix[i] = aBitmap.isBlack(x, y);
+			}
+		}
+	}
+
+
+	/**
+	 * Sets the resampled symbol, a square matrix of cells in row order where true is black.
+	 */
+	synchronized void setMatrix(boolean[] aMatrix, int aMatrixSize)
+	{
+		mMatrix = aMatrix;
+		mMatrixSize = aMatrixSize;
+		mBitmap = null;
+	}
+
+
+	boolean[] getMatrix()
+	{
+		return mMatrix;
+	}
+
+
+	boolean isBlack(int x, int y)
+	{
+		return mMatrix[mMatrixSize * y + x];
+	}
+
+
+	/**
+	 * @return true if no cell of the matrix is black
+	 */
+	boolean isBlank()
+	{
+		for (boolean b : mMatrix)
+		{
+			if (b)
+			{
+				return false;
+			}
+		}
+		return true;
 	}
 
 
@@ -62,14 +158,35 @@ public class Symbol
 	}
 
 
-	public BufferedImage getSymbolBitmap()
+	/**
+	 * Returns an image of the features extracted from this symbol, rendered on the first call. Symbols loaded from a
+	 * template file have no image.
+	 */
+	public synchronized BufferedImage getSymbolBitmap()
 	{
+		if (mSymbolBitmap == null && mSymbolBitmapRenderer != null)
+		{
+			mSymbolBitmap = mSymbolBitmapRenderer.get();
+			mSymbolBitmapRenderer = null;
+		}
+
 		return mSymbolBitmap;
 	}
 
 
-	public void setSymbolBitmap(BufferedImage aSymbolBitmap)
+	public synchronized void setSymbolBitmap(BufferedImage aSymbolBitmap)
 	{
 		mSymbolBitmap = aSymbolBitmap;
+		mSymbolBitmapRenderer = null;
+	}
+
+
+	/**
+	 * Sets a function rendering the symbol bitmap when it's first requested.
+	 */
+	synchronized void setSymbolBitmapRenderer(Supplier<BufferedImage> aRenderer)
+	{
+		mSymbolBitmap = null;
+		mSymbolBitmapRenderer = aRenderer;
 	}
 }
\ No newline at end of file
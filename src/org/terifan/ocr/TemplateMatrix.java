@@ -0,0 +1,195 @@
+package org.terifan.ocr;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+
+/**
+ * The curvature vectors of all learned symbols stored in one contiguous array, one row of FEATURES values per symbol.
+ * Instances are immutable and replaced when symbols are learned.
+ */
+final class TemplateMatrix
+{
+	/**
+	 * Number of values in a curvature vector: 8 orientations, 2 types and 3 zones.
+	 */
+	final static int FEATURES = 8 * 2 * 3;
+
+	private final ArrayList<Symbol> mSymbols;
+	private final int[] mFeatures;
+
+
+	TemplateMatrix(ArrayList<Symbol> aSymbols)
+	{
+		mSymbols = aSymbols;
+		mFeatures = new int[FEATURES * aSymbols.size()];
+
+		for (int i = 0; i < aSymbols.size(); i++)
+		{
+			getFeatures(aSymbols.get(i), mFeatures, FEATURES * i);
+		}
+	}
+
+
+	/**
+	 * @return the symbols in the same order as the rows of the matrix
+	 */
+	public ArrayList<Symbol> getSymbols()
+	{
+		return mSymbols;
+	}
+
+
+	public int size()
+	{
+		return mSymbols.size();
+	}
+
+
+	/**
+	 * Flattens the curvature vector of a symbol. The areas in the vector are pixel counts and are stored as integers.
+	 */
+	static void getFeatures(Symbol aSymbol, int[] aOutput, int aOffset)
+	{
+		for (int orientation = 0, i = aOffset; orientation < 8; orientation++)
+		{
+			for (int type = 0; type < 2; type++)
+			{
+				for (int zone = 0; zone < 3; zone++, i++)
+				{
+					aOutput[i] = (int)aSymbol.mCurvatureVector[orientation][type][zone];
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * @return the sum of absolute differences between the features and the row of a symbol
+	 */
+	public int distance(int aSymbolIndex, int[] aFeatures)
+	{
+		int[] features = mFeatures;
+		int offset = FEATURES * aSymbolIndex;
+		int sum = 0;
+
+		// simple loop with no branches allowing the JIT to vectorize it
+		for (int i = 0; i < FEATURES; i++)
+		{
+			sum += Math.abs(features[offset + i] - aFeatures[i]);
+		}
+
+		return sum;
+	}
+
+
+	/**
+	 * Returns the distance unless it exceeds the bound in which case the sum is abandoned and a value larger than the
+	 * bound is returned.
+	 */
+	public int distance(int aSymbolIndex, int[] aFeatures, int aBound)
+	{
+		int[] features = mFeatures;
+		int offset = FEATURES * aSymbolIndex;
+		int sum = 0;
+
+		for (int block = 0; block < FEATURES; block += 6)
+		{
+			for (int i = block; i < block + 6; i++)
+			{
+				sum += Math.abs(features[offset + i] - aFeatures[i]);
+			}
+
+			if (sum > aBound)
+			{
+				break;
+			}
+		}
+
+		return sum;
+	}
+
+
+	/**
+	 * Finds the admitted symbols closest to the features. Once aCount candidates are found the distance of the worst
+	 * is used as a bound and remaining symbols are abandoned as soon as their partial distance exceeds it. Candidates
+	 * are ordered by distance and then by index, so the result doesn't depend on the symbol tried first.
+	 *
+	 * @param aFirst
+	 *   index of a symbol likely to be close, typically the best match of the previous symbol, or -1
+	 * @param aIndices
+	 *   receives the indices of the candidates, best first
+	 * @param aScores
+	 *   receives the distances of the candidates
+	 * @return number of candidates found, at most aCount
+	 */
+	public int findNearest(int[] aFeatures, BitSet aAdmission, int aFirst, int aCount, int[] aIndices, int[] aScores)
+	{
+		int count = 0;
+		int bound = Integer.MAX_VALUE;
+
+		if (aFirst >= 0 && aFirst < size() && aAdmission.get(aFirst))
+		{
+			count = insert(aFirst, distance(aFirst, aFeatures), count, aCount, aIndices, aScores);
+			if (count == aCount)
+			{
+				bound = aScores[count - 1];
+			}
+		}
+		else
+		{
+			aFirst = -1;
+		}
+
+		for (int sym = aAdmission.nextSetBit(0); sym >= 0 && sym < size(); sym = aAdmission.nextSetBit(sym + 1))
+		{
+			if (sym == aFirst)
+			{
+				continue;
+			}
+
+			int points = distance(sym, aFeatures, bound);
+
+			if (points <= bound)
+			{
+				count = insert(sym, points, count, aCount, aIndices, aScores);
+				if (count == aCount)
+				{
+					bound = aScores[count - 1];
+				}
+			}
+		}
+
+		return count;
+	}
+
+
+	private static int insert(int aIndex, int aScore, int aCount, int aCapacity, int[] aIndices, int[] aScores)
+	{
+		int i = aCount;
+
+		if (i == aCapacity)
+		{
+			if (aScore > aScores[i - 1] || aScore == aScores[i - 1] && aIndex > aIndices[i - 1])
+			{
+				return aCount;
+			}
+			i--;
+		}
+		else
+		{
+			aCount++;
+		}
+
+		for (; i > 0 && (aScores[i - 1] > aScore || aScores[i - 1] == aScore && aIndices[i - 1] > aIndex); i--)
+		{
+			aScores[i] = aScores[i - 1];
+			aIndices[i] = aIndices[i - 1];
+		}
+
+		aScores[i] = aScore;
+		aIndices[i] = aIndex;
+
+		return aCount;
+	}
+}
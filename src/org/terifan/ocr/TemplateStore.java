@@ -0,0 +1,203 @@
+package org.terifan.ocr;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Reads and writes learned symbols in a compact binary format. Only the resampled matrix and the curvature vector
+ * used for classification are stored, together with the font name and characters of each symbol.
+ *
+ * <pre>
+ * int     magic "OCRT"
+ * int     version
+ * int     matrix size
+ * int     symbol count
+ * symbol  [count]
+ *   string  font name
+ *   string  character
+ *   string  default character
+ *   byte    [(size * size + 7) / 8] matrix, one bit per cell in row order, least significant bit first
+ *   int     [48] curvature vector in orientation, type, zone order
+ *
+ * string:  unsigned short length followed by UTF-8 bytes
+ * </pre>
+ */
+final class TemplateStore
+{
+	private final static int MAGIC = 0x4F435254;
+	private final static int VERSION = 1;
+
+
+	private TemplateStore()
+	{
+	}
+
+
+	static void write(Path aFile, int aMatrixSize, List<Symbol> aSymbols) throws IOException
+	{
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(aFile)))
+		{
+			write(out, aMatrixSize, aSymbols);
+		}
+	}
+
+
+	static void write(OutputStream aOutputStream, int aMatrixSize, List<Symbol> aSymbols) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(aOutputStream);
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(aMatrixSize);
+		out.writeInt(aSymbols.size());
+
+		int[] features = new int[TemplateMatrix.FEATURES];
+		byte[] matrix = new byte[(aMatrixSize * aMatrixSize + 7) / 8];
+
+		for (Symbol symbol : aSymbols)
+		{
+			writeString(out, symbol.mFontName);
+			writeString(out, symbol.mCharacter);
+			writeString(out, symbol.mDefCharacter);
+
+			boolean[] cells = symbol.getMatrix();
+			if (cells.length != aMatrixSize * aMatrixSize)
+			{
+				throw new IllegalArgumentException("Symbol matrix size doesn't match: " + cells.length);
+			}
+
+			Arrays.fill(matrix, (byte)0);
+			for (int i = 0; i < cells.length; i++)
+			{
+				if (cells[i])
+				{
+					matrix[i >>> 3] |= 1 << (i & 7);
+				}
+			}
+			out.write(matrix);
+
+			TemplateMatrix.getFeatures(symbol, features, 0);
+			for (int v : features)
+			{
+				out.writeInt(v);
+			}
+		}
+
+		out.flush();
+	}
+
+
+	/**
+	 * Reads symbols from a file mapped into memory.
+	 *
+	 * @param aMatrixSize
+	 *   the matrix size of the symbols expected
+	 */
+	static ArrayList<Symbol> read(Path aFile, int aMatrixSize) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(aFile, StandardOpenOption.READ))
+		{
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			return read(buffer, aMatrixSize);
+		}
+	}
+
+
+	static ArrayList<Symbol> read(ByteBuffer aBuffer, int aMatrixSize) throws IOException
+	{
+		try
+		{
+			if (aBuffer.getInt() != MAGIC)
+			{
+				throw new IOException("Not a template file");
+			}
+
+			int version = aBuffer.getInt();
+			if (version != VERSION)
+			{
+				throw new IOException("Unsupported template file version: " + version);
+			}
+
+			int matrixSize = aBuffer.getInt();
+			if (matrixSize != aMatrixSize)
+			{
+				throw new IOException("Template file matrix size " + matrixSize + " doesn't match " + aMatrixSize);
+			}
+
+			int count = aBuffer.getInt();
+			ArrayList<Symbol> symbols = new ArrayList<>(count);
+			byte[] matrix = new byte[(matrixSize * matrixSize + 7) / 8];
+
+			for (int i = 0; i < count; i++)
+			{
+				Symbol symbol = new Symbol(null);
+				symbol.mFontName = readString(aBuffer);
+				symbol.mCharacter = readString(aBuffer);
+				symbol.mDefCharacter = readString(aBuffer);
+
+				aBuffer.get(matrix);
+				boolean[] cells = new boolean[matrixSize * matrixSize];
+				for (int j = 0; j < cells.length; j++)
+				{
+					cells[j] = (matrix[j >>> 3] & (1 << (j & 7))) != 0;
+				}
+				symbol.setMatrix(cells, matrixSize);
+
+				double[][][] vector = symbol.mCurvatureVector = new double[8][2][3];
+				for (int orientation = 0; orientation < 8; orientation++)
+				{
+					for (int type = 0; type < 2; type++)
+					{
+						for (int zone = 0; zone < 3; zone++)
+						{
+							vector[orientation][type][zone] = aBuffer.getInt();
+						}
+					}
+				}
+
+				symbols.add(symbol);
+			}
+
+			return symbols;
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IOException("Template file is truncated", e);
+		}
+	}
+
+
+	private static void writeString(DataOutputStream aOutput, String aString) throws IOException
+	{
+		byte[] bytes = aString.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > 0xffff)
+		{
+			throw new IllegalArgumentException("String too long: " + aString.length());
+		}
+		aOutput.writeShort(bytes.length);
+		aOutput.write(bytes);
+	}
+
+
+	private static String readString(ByteBuffer aBuffer)
+	{
+		byte[] bytes = new byte[0xffff & aBuffer.getShort()];
+		aBuffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -1,20 +1,29 @@
 package org.terifan.ocr;
 
+import java.awt.Insets;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.function.Supplier;
 
 
 public class TextBox extends Rectangle
 {
 	private ArrayList<TextBox> mChildren = new ArrayList<>();
 	private ArrayList<Result> mResults = new ArrayList<>();
+	private ArrayList<Result> mCandidates = new ArrayList<>();
 	private int mIndex; // relative to first TextBox in root TextBox
 	private TextBox mParent;
 	private boolean mComplete;
 	private Resolver mResolver;
 	private BufferedImage mBitmap;
+	private Bitmap mRegionSource;
+	private int mRegionLeft;
+	private int mRegionTop;
+	private int mRegionRight;
+	private int mRegionBottom;
 	private BufferedImage mSymbolBitmap;
+	private Supplier<BufferedImage> mSymbolBitmapRenderer;
 	private BufferedImage mNormalizedBitmap;
 
 
@@ -44,6 +53,9 @@ public class TextBox extends Rectangle
 	}
 
 
+	/**
+	 * Returns the mean distance of the results of this box to their symbols, lower is better.
+	 */
 	public double getScore()
 	{
 		double score = 0;
@@ -103,6 +115,16 @@ public class TextBox extends Rectangle
 	}
 
 
+	/**
+	 * Returns the best matching symbols of a classified TextBox ordered by score, best first. The number of candidates
+	 * is set with OCREngine.setCandidateCount.
+	 */
+	public ArrayList<Result> getCandidates()
+	{
+		return mCandidates;
+	}
+
+
 	public Rectangle getRectangle()
 	{
 		return new Rectangle(x, y, width, height);
@@ -132,26 +154,87 @@ public class TextBox extends Rectangle
 	}
 
 
-	public BufferedImage getBitmap()
+	/**
+	 * Returns the image of the symbol inside this TextBox, excluding the white borders. The image of a scanned symbol
+	 * is a sub image of the page created when first requested, until the scan result is detached from the page, which
+	 * BatchProcessor and PagePipeline do. It's null afterwards unless it was requested before.
+	 */
+	public synchronized BufferedImage getBitmap()
 	{
+		if (mBitmap == null && mRegionSource != null)
+		{
+			mBitmap = mRegionSource.getRegion(x + mRegionLeft, y + mRegionTop, x + width - mRegionRight + 1, y + height - mRegionBottom + 1);
+			mRegionSource = null;
+		}
+
 		return mBitmap;
 	}
 
 
-	public void setBitmap(BufferedImage aBitmap)
+	public synchronized void setBitmap(BufferedImage aBitmap)
 	{
 		mBitmap = aBitmap;
+		mRegionSource = null;
 	}
 
 
-	public BufferedImage getSymbolBitmap()
+	/**
+	 * Sets the Bitmap and borders of the image returned by getBitmap without creating it.
+	 */
+	synchronized void setRegion(Bitmap aBitmap, Insets aBorders)
 	{
+		mBitmap = null;
+		mRegionSource = aBitmap;
+		mRegionLeft = aBorders.left;
+		mRegionTop = aBorders.top;
+		mRegionRight = aBorders.right;
+		mRegionBottom = aBorders.bottom;
+	}
+
+
+	/**
+	 * Drops the reference to the page Bitmap, only the borders of the region are kept.
+	 */
+	synchronized void releaseRegion()
+	{
+		mRegionSource = null;
+
+		for (TextBox child : mChildren)
+		{
+			child.releaseRegion();
+		}
+	}
+
+
+	/**
+	 * Returns an image of the features extracted from this symbol. The image is only available when diagnostics are
+	 * enabled in the OCREngine and is rendered on the first call.
+	 */
+	public synchronized BufferedImage getSymbolBitmap()
+	{
+		if (mSymbolBitmap == null && mSymbolBitmapRenderer != null)
+		{
+			mSymbolBitmap = mSymbolBitmapRenderer.get();
+			mSymbolBitmapRenderer = null;
+		}
+
 		return mSymbolBitmap;
 	}
 
 
-	public void setSymbolBitmap(BufferedImage aSymbolBitmap)
+	public synchronized void setSymbolBitmap(BufferedImage aSymbolBitmap)
 	{
 		mSymbolBitmap = aSymbolBitmap;
+		mSymbolBitmapRenderer = null;
+	}
+
+
+	/**
+	 * Sets a function rendering the symbol bitmap when it's first requested.
+	 */
+	synchronized void setSymbolBitmapRenderer(Supplier<BufferedImage> aRenderer)
+	{
+		mSymbolBitmap = null;
+		mSymbolBitmapRenderer = aRenderer;
 	}
 }
\ No newline at end of file
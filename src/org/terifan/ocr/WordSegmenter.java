@@ -2,6 +2,8 @@ package org.terifan.ocr;
 
 import java.awt.Insets;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.DoublePredicate;
 
 
@@ -12,13 +14,42 @@ class WordSegmenter
 
 
 	public void scanPage(Page aPage, Settings aSettings, ArrayList<TextBox> aTextBoxes)
+	{
+		scanPage(aPage, aSettings, aTextBoxes, null);
+	}
+
+
+	/**
+	 * Split each word into characters.
+	 *
+	 * @param aPool pool used to split the words concurrently or null to run on the calling thread
+	 */
+	public void scanPage(Page aPage, Settings aSettings, ArrayList<TextBox> aTextBoxes, ForkJoinPool aPool)
 	{
 		mPage = aPage;
 		mSettings = aSettings;
 
-		for (TextBox box : aTextBoxes)
+		if (aPool == null)
 		{
-			splitTextBox(box);
+			for (TextBox box : aTextBoxes)
+			{
+				splitTextBox(box);
+			}
+		}
+		else
+		{
+			// each word only modifies its own TextBox
+			ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(aTextBoxes.size());
+
+			for (TextBox box : aTextBoxes)
+			{
+				tasks.add(aPool.submit(() -> splitTextBox(box)));
+			}
+
+			for (ForkJoinTask<?> task : tasks)
+			{
+				task.join();
+			}
 		}
 	}
 
@@ -162,22 +193,15 @@ class WordSegmenter
 	{
 		int iw = mPage.getWidth();
 		int ih = mPage.getHeight();
-		int n = 0;
-		int s = 0;
 
 		if (aX < 0 || aX >= iw)
 		{
 			return 0;
 		}
 
-		for (int y = Math.max(aY, 0), maxY = Math.min(aY + aHeight, ih); y < maxY; y++)
-		{
-			if (mPage.isBlack(aX, y))
-			{
-				s++;
-			}
-			n++;
-		}
+		int y0 = Math.max(aY, 0);
+		int n = Math.max(Math.min(aY + aHeight, ih) - y0, 0);
+		int s = n == 0 ? 0 : mPage.getBitmap().getPackedBitmap().countBlackInColumn(aX, y0, y0 + n);
 
 		return s / (double)n;
 	}
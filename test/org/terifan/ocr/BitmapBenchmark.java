@@ -0,0 +1,89 @@
+package org.terifan.ocr;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+
+/**
+ * Compares creating a Bitmap from gray pixels with drawing them on a new gray image, which the Bitmap constructor did
+ * for all images, and verifies that the pixels are identical. Also verifies that the constructor copies the pixels of
+ * a gray image while Bitmap.wrap shares them, and that a direct buffer too small for the layout is rejected.
+ */
+public class BitmapBenchmark
+{
+	public static void main(String... args)
+	{
+		int width = 2480;
+		int height = 3508;
+		int stride = width + 16;
+		int rounds = 10;
+
+		byte[] pixels = new byte[stride * height];
+		new Random(1).nextBytes(pixels);
+
+		Bitmap source = Bitmap.wrap(pixels, 0, stride, width, height);
+		BufferedImage image = source.getImage();
+		ByteBuffer direct = ByteBuffer.allocateDirect(pixels.length);
+		direct.put(pixels).flip();
+
+		for (int round = 0; round < rounds; round++)
+		{
+			long t0 = System.nanoTime();
+			byte[] expected = drawGray(image);
+			long t1 = System.nanoTime();
+			Bitmap fromImage = new Bitmap(image);
+			long t2 = System.nanoTime();
+			Bitmap fromArray = Bitmap.wrap(pixels, 0, stride, width, height);
+			long t3 = System.nanoTime();
+			Bitmap fromDirect = Bitmap.wrap(direct, stride, width, height);
+			long t4 = System.nanoTime();
+			Bitmap wrapped = Bitmap.wrap(image);
+			long t5 = System.nanoTime();
+
+			int mismatches = 0;
+			for (int y = 0, i = 0; y < height; y++)
+			{
+				for (int x = 0; x < width; x++, i++)
+				{
+					mismatches += fromImage.colorAt(x, y) != expected[i] || fromArray.colorAt(x, y) != expected[i] || fromDirect.colorAt(x, y) != expected[i] || wrapped.colorAt(x, y) != expected[i] ? 1 : 0;
+				}
+			}
+
+			System.out.printf("java2d %6.2f ms, copy image %6.2f ms, array %6.3f ms, direct buffer %6.2f ms, wrap image %6.3f ms, mismatches %d%n", (t1 - t0) / 1e6, (t2 - t1) / 1e6, (t3 - t2) / 1e6, (t4 - t3) / 1e6, (t5 - t4) / 1e6, mismatches);
+		}
+
+		Bitmap copy = new Bitmap(image);
+		Bitmap wrapped = Bitmap.wrap(image);
+		byte original = pixels[0];
+		pixels[0] = (byte)~original;
+
+		System.out.println("constructor copies: " + (copy.colorAt(0, 0) == original) + ", wrap shares: " + (wrapped.colorAt(0, 0) == pixels[0]));
+
+		pixels[0] = original;
+
+		try
+		{
+			Bitmap.wrap(ByteBuffer.allocateDirect(stride * (height - 1)), stride, width, height);
+			System.out.println("short direct buffer accepted");
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println("short direct buffer rejected: " + e.getMessage());
+		}
+	}
+
+
+	private static byte[] drawGray(BufferedImage aImage)
+	{
+		BufferedImage gray = new BufferedImage(aImage.getWidth(), aImage.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+
+		Graphics2D g = gray.createGraphics();
+		g.drawImage(aImage, 0, 0, null);
+		g.dispose();
+
+		return ((DataBufferByte)gray.getRaster().getDataBuffer()).getData();
+	}
+}
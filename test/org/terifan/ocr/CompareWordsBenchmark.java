@@ -0,0 +1,147 @@
+package org.terifan.ocr;
+
+import java.util.Random;
+
+
+/**
+ * Compares SimpleResolver.compareWords with the recursive implementation it replaced, using the examples listed in
+ * its comments and random variations of a long template.
+ */
+public class CompareWordsBenchmark
+{
+	private final static String[][] EXAMPLES =
+	{
+		{"abcdefghijklmnop", "abcdxfghijklmnop"},
+		{"abcdefghijklmnop", "abcdxxfghijklmnop"},
+		{"abcdefghijklmnop", "abcdxxxfghijklmnop"},
+		{"abcdefghijklmnop", "abcdfghijklmnop"},
+		{"abcdefghijklmnop", "abcdghijklmnop"},
+		{"abcdefghijklmnop", "abcdhijklmnop"},
+		{"abcdefghijklmnop", "acdeghijklmnop"},
+		{"abcdefghijklmnop", "axcdeghijklmnop"},
+		{"abcdefghijklmnop", "axcdexghijklmnop"},
+		{"abcdefghijklmnop", "axcdexghijklmnopxx"},
+		{"abcdefghijklmnop", "axcdexghijklmn"},
+		{"TOBAPHO-TPAHCIOPTHARHAKJADHARNo^", "TOBAPHO-TPARCIOPTBARHAKJADHARNO"},
+		{"TOBAPHO-TPAHCIOPTHARHAKJADHARNo^", "TOBAPHO-TPHCIOP-RHAKXYZJADHARNo121271/o8"}
+	};
+
+
+	public static void main(String... args)
+	{
+		int maxErrors = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int rounds = 10;
+		int repeat = 20;
+
+		verify();
+
+		for (int round = 0; round < rounds; round++)
+		{
+			int accepted = 0;
+			long t0 = System.nanoTime();
+
+			for (int r = 0; r < repeat; r++)
+			{
+				for (String[] example : EXAMPLES)
+				{
+					accepted += legacyCompareWords(example[0], example[1], maxErrors, false) ? 1 : 0;
+				}
+			}
+
+			long t1 = System.nanoTime();
+
+			for (int r = 0; r < repeat; r++)
+			{
+				for (String[] example : EXAMPLES)
+				{
+					accepted -= SimpleResolver.compareWords(example[0], example[1], maxErrors, false) ? 1 : 0;
+				}
+			}
+
+			long t2 = System.nanoTime();
+
+			int calls = repeat * EXAMPLES.length;
+
+			System.out.printf("maxErrors %d, recursive %8d ns, banded %6d ns per call%s%n", maxErrors, (t1 - t0) / calls, (t2 - t1) / calls, accepted == 0 ? "" : " MISMATCH");
+		}
+	}
+
+
+	private static void verify()
+	{
+		Random rnd = new Random(1);
+		String alphabet = "ab\r";
+
+		for (int i = 0; i < 200000; i++)
+		{
+			String template = random(rnd, alphabet, rnd.nextInt(9)) + (rnd.nextBoolean() ? "^" : "");
+			String compare = random(rnd, alphabet.substring(0, 2), rnd.nextInt(9));
+			int maxErrors = rnd.nextInt(5);
+
+			if (legacyCompareWords(template, compare, maxErrors, true) != SimpleResolver.compareWords(template, compare, maxErrors, true))
+			{
+				throw new IllegalStateException("Results differ: " + template.replace("\r", "\\r") + ", " + compare + ", " + maxErrors);
+			}
+		}
+	}
+
+
+	private static String random(Random aRandom, String aAlphabet, int aLength)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < aLength; i++)
+		{
+			sb.append(aAlphabet.charAt(aRandom.nextInt(aAlphabet.length())));
+		}
+		return sb.toString();
+	}
+
+
+	private static boolean legacyCompareWords(String aTemplate, String aCompare, int aMaxErrors, boolean aCaseSensitive)
+	{
+		if (!aCaseSensitive)
+		{
+			aTemplate = aTemplate.toLowerCase();
+			aCompare = aCompare.toLowerCase();
+		}
+
+		boolean trimCompare = aTemplate.endsWith("^");
+		if (trimCompare)
+		{
+			aTemplate = aTemplate.substring(0, aTemplate.length() - 1);
+		}
+
+		return legacyCompareWords(aTemplate, aCompare, 0, 0, aMaxErrors, 0, trimCompare) <= aMaxErrors;
+	}
+
+
+	private static int legacyCompareWords(String aTemplate, String aCompare, int aTemplateOffset, int aCompareOffset, int aMaxErrors, int aError, boolean aTrimCompare)
+	{
+		for (; aTemplateOffset < aTemplate.length() && aCompareOffset < aCompare.length(); aTemplateOffset++, aCompareOffset++)
+		{
+			char t = aTemplate.charAt(aTemplateOffset);
+			if (t != '\r' && t != aCompare.charAt(aCompareOffset))
+			{
+				aError++;
+
+				if (aError > aMaxErrors)
+				{
+					return aError;
+				}
+
+				int e1 = legacyCompareWords(aTemplate, aCompare, aTemplateOffset + 1, aCompareOffset, aMaxErrors, aError, aTrimCompare);
+				int e2 = legacyCompareWords(aTemplate, aCompare, aTemplateOffset, aCompareOffset + 1, aMaxErrors, aError, aTrimCompare);
+				int e3 = legacyCompareWords(aTemplate, aCompare, aTemplateOffset + 1, aCompareOffset + 1, aMaxErrors, aError, aTrimCompare);
+
+				return Math.min(e1, Math.min(e2, e3));
+			}
+		}
+
+		if (aTrimCompare && aTemplateOffset == aTemplate.length())
+		{
+			return aError;
+		}
+
+		return aError + Math.abs((aTemplate.length() - aTemplateOffset) - (aCompare.length() - aCompareOffset));
+	}
+}
@@ -0,0 +1,90 @@
+package org.terifan.ocr;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+
+/**
+ * Scans a page with one OCRSession per task on a growing number of threads sharing one OCRModel, and verifies that
+ * every session reads the same text as a single session. Each round starts with an empty glyph cache. Also verifies
+ * that the templates returned by the model are copies.
+ */
+public class ConcurrentSessionBenchmark
+{
+	public static void main(String... args) throws Exception
+	{
+		int pages = 32;
+		int maxThreads = Math.max(8, Runtime.getRuntime().availableProcessors());
+
+		OCREngine engine = new OCREngine(OCREngine.DEFAULT_MATRIX_SIZE);
+		BufferedImage[] fonts = new BufferedImage[2];
+
+		for (int i = 0; i < fonts.length; i++)
+		{
+			String font = i == 0 ? "arial" : "courier";
+			fonts[i] = ImageIO.read(OCREngine.class.getResource("fonts/" + font + ".png"));
+			engine.learnAlphabet(font, new Bitmap(fonts[i]));
+		}
+
+		OCRModel model = engine.getModel();
+		BufferedImage image = ScanAllocationBenchmark.createPage(fonts, new String[]{"The quick brown fox", "jumps over the lazy dog", "Invoice 12345 paid", "Transport Document 0042"});
+
+		String expected = scan(model, image);
+		System.out.println(expected);
+
+		for (int threads = 1; threads <= maxThreads; threads *= 2)
+		{
+			model.getGlyphCache().clear();
+
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			List<Future<String>> results = new ArrayList<>();
+
+			long t0 = System.nanoTime();
+			for (int i = 0; i < pages; i++)
+			{
+				results.add(executor.submit(() -> scan(model, image)));
+			}
+
+			int mismatches = 0;
+			for (Future<String> result : results)
+			{
+				mismatches += expected.equals(result.get()) ? 0 : 1;
+			}
+			long t1 = System.nanoTime();
+
+			executor.shutdown();
+
+			System.out.printf("%2d threads %6.1f pages/s, mismatches %d, %s%n", threads, pages / ((t1 - t0) / 1e9), mismatches, model.getGlyphCache());
+		}
+
+		List<Symbol> templates = model.getTemplates();
+		templates.get(0).setSymbolBitmap(null);
+
+		System.out.println("templates are copies: " + (templates.get(0) != model.getTemplates().get(0) && templates.get(0).getCharacter().equals(model.getTemplates().get(0).getCharacter())));
+	}
+
+
+	private static String scan(OCRModel aModel, BufferedImage aImage)
+	{
+		Page page = new Page(new Bitmap(aImage));
+		Settings settings = new Settings();
+		settings.setMaxCharacterSpacingFraction(0.5, page);
+
+		OCRSession session = new OCRSession(aModel);
+		session.loadPage(page, settings);
+		session.scan(0, 0, 1, 1, new SimpleResolver());
+
+		StringBuilder text = new StringBuilder();
+		for (TextBox box : session.getScanResult())
+		{
+			text.append(box).append(' ');
+		}
+
+		return text.toString().trim();
+	}
+}
@@ -0,0 +1,113 @@
+package org.terifan.ocr;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Random;
+
+
+/**
+ * Rotates a synthetic page by a range of angles, deskews it with Bitmap.adjustPageRotation and measures the remaining
+ * skew of a ruler line. Also runs the skewed pages through a PagePipeline with the DESKEW stage enabled.
+ */
+public class DeskewBenchmark
+{
+	public static void main(String... args) throws Exception
+	{
+		double[] angles = {-4, -2.56, -1, -0.5, 0.5, 1, 2.56, 4};
+		ArrayList<ImageSource> sources = new ArrayList<>();
+		int failures = 0;
+
+		for (double angle : angles)
+		{
+			BufferedImage page = createPage(angle);
+			Bitmap bitmap = new Bitmap(page);
+
+			double before = measureSkew(bitmap);
+			long t0 = System.nanoTime();
+			bitmap.adjustPageRotation();
+			long t1 = System.nanoTime();
+			double after = measureSkew(bitmap);
+
+			boolean ok = Math.abs(after) < 0.2;
+			failures += ok ? 0 : 1;
+
+			System.out.printf("rotated %6.2f, measured %6.2f, after deskew %6.2f, %4.0f ms %s%n", angle, before, after, (t1 - t0) / 1e6, ok ? "" : "FAILED");
+
+			sources.add(ImageSource.of("page " + angle, page));
+		}
+
+		PagePipeline pipeline = new PagePipeline(new OCREngine(OCREngine.DEFAULT_MATRIX_SIZE).getModel());
+		pipeline.setDeskew(true);
+
+		int[] errors = new int[1];
+		pipeline.process(sources, r ->
+		{
+			if (r.getError() != null)
+			{
+				System.out.println(r);
+				errors[0]++;
+			}
+		});
+
+		System.out.println("pipeline errors " + errors[0] + ", deskew failures " + failures);
+	}
+
+
+	/**
+	 * Creates a white page with a ruler line near the top and blocks of text-like marks below, rotated clockwise by the
+	 * angle.
+	 */
+	private static BufferedImage createPage(double aAngle)
+	{
+		int width = 2000;
+		int height = 1400;
+
+		BufferedImage page = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D g = page.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		g.rotate(Math.toRadians(aAngle), width / 2, height / 2);
+		g.setColor(Color.BLACK);
+		g.fillRect(200, 300, 1600, 3);
+
+		Random rnd = new Random(1);
+		for (int y = 400; y < 1100; y += 60)
+		{
+			for (int x = 200; x < 1700; x += 30 + rnd.nextInt(30))
+			{
+				g.fillRect(x, y, 8 + rnd.nextInt(12), 20 + rnd.nextInt(10));
+			}
+		}
+
+		g.dispose();
+
+		return page;
+	}
+
+
+	/**
+	 * Returns the angle in degrees of the ruler line, found as the topmost black pixel in two columns.
+	 */
+	private static double measureSkew(Bitmap aBitmap)
+	{
+		int x0 = aBitmap.getWidth() / 2 - 500;
+		int x1 = aBitmap.getWidth() / 2 + 500;
+
+		return Math.toDegrees(Math.atan2(findTop(aBitmap, x1) - findTop(aBitmap, x0), x1 - x0));
+	}
+
+
+	private static int findTop(Bitmap aBitmap, int aX)
+	{
+		for (int y = 0; y < aBitmap.getHeight(); y++)
+		{
+			if (aBitmap.isBlack(aX, y))
+			{
+				return y;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,82 @@
+package org.terifan.ocr;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.BitSet;
+import javax.imageio.ImageIO;
+
+
+/**
+ * Measures the time and heap allocation per symbol of extracting the features of a Symbol compared to extracting the
+ * curvature vector with a FeatureExtractor and finding the closest template. The matrices of the learned symbols are
+ * used as input.
+ */
+public class FeatureExtractorBenchmark
+{
+	public static void main(String... args) throws Exception
+	{
+		int rounds = 20;
+		int repeat = 50;
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		CurvatureClassifier classifier = new CurvatureClassifier(OCREngine.DEFAULT_MATRIX_SIZE);
+
+		for (String font : new String[]{"arial", "courier"})
+		{
+			BufferedImage image = ImageIO.read(OCREngine.class.getResource("fonts/" + font + ".png"));
+			classifier.learn(font, new Bitmap(image), null);
+		}
+
+		ArrayList<Symbol> templates = classifier.getSymbols();
+		TemplateMatrix matrix = new TemplateMatrix(templates);
+		BitSet admission = new BitSet();
+		admission.set(0, templates.size());
+
+		FeatureExtractor extractor = new FeatureExtractor(OCREngine.DEFAULT_MATRIX_SIZE);
+		int[] features = extractor.getFeatures();
+		int[] indices = extractor.getCandidateIndices(1);
+		int[] scores = extractor.getCandidateScores(1);
+		int symbols = repeat * templates.size();
+
+		System.out.printf("%d templates, %d symbols per round%n", templates.size(), symbols);
+
+		for (int round = 0; round < rounds; round++)
+		{
+			long checksum = 0;
+			long a0 = threads.getThreadAllocatedBytes(threadId);
+			long t0 = System.nanoTime();
+
+			for (int r = 0; r < repeat; r++)
+			{
+				for (Symbol template : templates)
+				{
+					Symbol symbol = new Symbol(null);
+					symbol.setMatrix(template.getMatrix(), OCREngine.DEFAULT_MATRIX_SIZE);
+					classifier.extractFeatures(symbol);
+					checksum += (int)symbol.mCurvatureVector[0][0][0];
+				}
+			}
+
+			long t1 = System.nanoTime();
+			long a1 = threads.getThreadAllocatedBytes(threadId);
+
+			for (int r = 0; r < repeat; r++)
+			{
+				for (Symbol template : templates)
+				{
+					extractor.extract(template.getMatrix(), features);
+					matrix.findNearest(features, admission, -1, 1, indices, scores);
+					checksum -= features[0];
+				}
+			}
+
+			long t2 = System.nanoTime();
+			long a2 = threads.getThreadAllocatedBytes(threadId);
+
+			System.out.printf("symbol %5d ns %6d bytes, extractor + match %5d ns %6d bytes per symbol%s%n", (t1 - t0) / symbols, (a1 - a0) / symbols, (t2 - t1) / symbols, (a2 - a1) / symbols, checksum == 0 ? "" : " MISMATCH");
+		}
+	}
+}
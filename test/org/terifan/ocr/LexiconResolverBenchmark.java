@@ -0,0 +1,148 @@
+package org.terifan.ocr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Compares LexiconResolver with matching every lexicon word using SimpleResolver.compareWords on a random lexicon
+ * and verifies that both accept the same words.
+ */
+public class LexiconResolverBenchmark
+{
+	public static void main(String... args)
+	{
+		int wordCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int maxErrors = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int queries = 200;
+		int rounds = 5;
+
+		Random rnd = new Random(1);
+		List<String> words = new ArrayList<>();
+
+		for (int i = 0; i < wordCount; i++)
+		{
+			String w = randomWord(rnd, 4 + rnd.nextInt(10));
+			words.add(rnd.nextInt(20) == 0 ? w.toUpperCase() : w);
+		}
+
+		String[] queryWords = new String[queries];
+		for (int i = 0; i < queries; i++)
+		{
+			queryWords[i] = i % 2 == 0 ? mutate(rnd, words.get(rnd.nextInt(wordCount)), maxErrors + 1) : randomWord(rnd, 3 + rnd.nextInt(10));
+		}
+
+		long t0 = System.nanoTime();
+		LexiconResolver resolver = new LexiconResolver(maxErrors, words);
+		long t1 = System.nanoTime();
+
+		System.out.printf("compiled %d words into %d states in %.1f ms%n", resolver.getWordCount(), resolver.getStateCount(), (t1 - t0) / 1e6);
+
+		for (int round = 0; round < rounds; round++)
+		{
+			int accepted = 0;
+			int mismatches = 0;
+			long linear = 0;
+			long lexicon = 0;
+
+			for (String query : queryWords)
+			{
+				long t2 = System.nanoTime();
+				boolean expected = false;
+				for (String w : words)
+				{
+					if (SimpleResolver.compareWords(w, query, maxErrors, false))
+					{
+						expected = true;
+						break;
+					}
+				}
+				long t3 = System.nanoTime();
+				boolean found = resolver.matches(query);
+				long t4 = System.nanoTime();
+
+				linear += t3 - t2;
+				lexicon += t4 - t3;
+				accepted += found ? 1 : 0;
+				mismatches += found != expected ? 1 : 0;
+			}
+
+			System.out.printf("linear %8.1f us/word, lexicon %6.1f us/word, accepted %d/%d, mismatches %d%n", linear / 1e3 / queries, lexicon / 1e3 / queries, accepted, queries, mismatches);
+		}
+
+		verifyMatches(rnd, maxErrors);
+	}
+
+
+	/**
+	 * Checks that findMatches returns exactly the words accepted by compareWords on a small lexicon.
+	 */
+	private static void verifyMatches(Random aRandom, int aMaxErrors)
+	{
+		int failures = 0;
+
+		for (int test = 0; test < 2000; test++)
+		{
+			List<String> words = new ArrayList<>();
+			for (int i = 0; i < 20; i++)
+			{
+				String w = randomWord(aRandom, 1 + aRandom.nextInt(6)).replace('e', '\r');
+				words.add(aRandom.nextInt(5) == 0 ? w + "^" : w);
+			}
+
+			String query = mutate(aRandom, words.get(aRandom.nextInt(words.size())).replace("^", "").replace('\r', 'x'), aMaxErrors + 1);
+			List<String> matches = new LexiconResolver(aMaxErrors, words).findMatches(query);
+
+			for (String w : words)
+			{
+				if (SimpleResolver.compareWords(w, query, aMaxErrors, false) != matches.contains(w.toLowerCase()))
+				{
+					failures++;
+				}
+			}
+		}
+
+		System.out.println("verified findMatches, failures " + failures);
+	}
+
+
+	private static String randomWord(Random aRandom, int aLength)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < aLength; i++)
+		{
+			sb.append((char)('a' + aRandom.nextInt(26)));
+		}
+		return sb.toString();
+	}
+
+
+	private static String mutate(Random aRandom, String aWord, int aEdits)
+	{
+		StringBuilder sb = new StringBuilder(aWord);
+		for (int i = aRandom.nextInt(aEdits + 1); --i >= 0;)
+		{
+			int p = aRandom.nextInt(sb.length() + 1);
+			switch (aRandom.nextInt(3))
+			{
+				case 0:
+					sb.insert(p, (char)('a' + aRandom.nextInt(26)));
+					break;
+				case 1:
+					if (p < sb.length())
+					{
+						sb.deleteCharAt(p);
+					}
+					break;
+				default:
+					if (p < sb.length())
+					{
+						sb.setCharAt(p, (char)('a' + aRandom.nextInt(26)));
+					}
+					break;
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,178 @@
+package org.terifan.ocr;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+
+/**
+ * Writes a multi-page TIFF and processes it with a BatchProcessor and a PagePipeline, verifying that every page reads
+ * the same text as the original image, that results arrive in page order and that pages are decoded only as far ahead
+ * of the consumer as the max in-flight setting allows.
+ */
+public class MultiPageImageSourceBenchmark
+{
+	public static void main(String... args) throws Exception
+	{
+		int pageCount = 24;
+		int maxInFlight = 3;
+
+		OCREngine engine = new OCREngine(OCREngine.DEFAULT_MATRIX_SIZE);
+		BufferedImage[] fonts = new BufferedImage[2];
+
+		for (int i = 0; i < fonts.length; i++)
+		{
+			String font = i == 0 ? "arial" : "courier";
+			fonts[i] = ImageIO.read(OCREngine.class.getResource("fonts/" + font + ".png"));
+			engine.learnAlphabet(font, new Bitmap(fonts[i]));
+		}
+
+		BufferedImage image = ScanAllocationBenchmark.createPage(fonts, new String[]{"The quick brown fox", "Invoice 12345 paid"});
+		File file = File.createTempFile("multipage", ".tif");
+		file.deleteOnExit();
+
+		long t0 = System.nanoTime();
+		writePages(file, image, pageCount);
+		long t1 = System.nanoTime();
+
+		System.out.printf("wrote %d pages, %d bytes, %.0f ms%n", pageCount, file.length(), (t1 - t0) / 1e6);
+
+		BatchProcessor batch = new BatchProcessor(engine.getModel());
+		batch.setThreadCount(2);
+		batch.setMaxInFlight(maxInFlight);
+		batch.setSettingsProvider(MultiPageImageSourceBenchmark::createSettings);
+
+		PagePipeline pipeline = new PagePipeline(engine.getModel());
+		pipeline.setMaxInFlight(maxInFlight);
+		pipeline.setSettingsProvider(MultiPageImageSourceBenchmark::createSettings);
+
+		String expected = scan(engine.getModel(), image);
+
+		for (int mode = 0; mode < 2; mode++)
+		{
+			try (MultiPageImageSource source = new MultiPageImageSource(file.toPath()))
+			{
+				AtomicInteger decoded = new AtomicInteger();
+				int[] consumed = new int[1];
+				int[] maxAhead = new int[1];
+				int[] failures = new int[1];
+
+				ArrayList<ImageSource> sources = new ArrayList<>();
+				for (ImageSource page : source)
+				{
+					sources.add(countReads(page, decoded));
+				}
+
+				long t2 = System.nanoTime();
+
+				Consumer<BatchResult> consumer = r ->
+				{
+					maxAhead[0] = Math.max(maxAhead[0], decoded.get() - consumed[0]);
+
+					boolean ok = r.getError() == null && r.getIndex() == consumed[0] && expected.equals(toString(r.getScanResult()));
+					failures[0] += ok ? 0 : 1;
+					consumed[0]++;
+				};
+
+				if (mode == 0)
+				{
+					batch.process(sources, consumer);
+				}
+				else
+				{
+					pipeline.process(sources, consumer);
+				}
+
+				long t3 = System.nanoTime();
+
+				System.out.printf("%-14s %d pages, %6.1f ms per page, decoded at most %d pages ahead (max in-flight %d), failures %d%n", mode == 0 ? "BatchProcessor" : "PagePipeline", consumed[0], (t3 - t2) / 1e6 / consumed[0], maxAhead[0], maxInFlight, failures[0]);
+			}
+		}
+	}
+
+
+	private static void writePages(File aFile, BufferedImage aImage, int aPageCount) throws IOException
+	{
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+
+		try (ImageOutputStream output = ImageIO.createImageOutputStream(aFile))
+		{
+			writer.setOutput(output);
+			writer.prepareWriteSequence(null);
+
+			for (int i = 0; i < aPageCount; i++)
+			{
+				writer.writeToSequence(new IIOImage(aImage, null, null), null);
+			}
+
+			writer.endWriteSequence();
+		}
+		finally
+		{
+			writer.dispose();
+		}
+	}
+
+
+	/**
+	 * Returns a source counting its reads, which are counted when the decoded page is returned.
+	 */
+	private static ImageSource countReads(ImageSource aSource, AtomicInteger aCounter)
+	{
+		return new ImageSource()
+		{
+			@Override
+			public String getName()
+			{
+				return aSource.getName();
+			}
+
+
+			@Override
+			public BufferedImage read() throws IOException
+			{
+				BufferedImage image = aSource.read();
+				aCounter.incrementAndGet();
+				return image;
+			}
+		};
+	}
+
+
+	private static Settings createSettings(Page aPage)
+	{
+		Settings settings = new Settings();
+		settings.setMaxCharacterSpacingFraction(0.5, aPage);
+		return settings;
+	}
+
+
+	private static String scan(OCRModel aModel, BufferedImage aImage)
+	{
+		Page page = new Page(new Bitmap(aImage));
+
+		OCRSession session = new OCRSession(aModel);
+		session.loadPage(page, createSettings(page));
+		session.scan(0, 0, 1, 1, new SimpleResolver());
+
+		return toString(session.getScanResult());
+	}
+
+
+	private static String toString(ArrayList<TextBox> aTextBoxes)
+	{
+		StringBuilder text = new StringBuilder();
+		for (TextBox box : aTextBoxes)
+		{
+			text.append(box).append(' ');
+		}
+		return text.toString().trim();
+	}
+}
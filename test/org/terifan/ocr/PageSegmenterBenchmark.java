@@ -0,0 +1,148 @@
+package org.terifan.ocr;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.ImageIO;
+
+
+/**
+ * Segments pages on the calling thread and with pools of a growing number of threads, with and without component
+ * labeling, and verifies that the words and characters found with a pool are identical to the sequential result.
+ */
+public class PageSegmenterBenchmark
+{
+	public static void main(String... args) throws Exception
+	{
+		int rounds = 5;
+
+		BufferedImage[] fonts = new BufferedImage[2];
+		for (int i = 0; i < fonts.length; i++)
+		{
+			fonts[i] = ImageIO.read(OCREngine.class.getResource("fonts/" + (i == 0 ? "arial" : "courier") + ".png"));
+		}
+
+		String[] lines = {"The quick brown fox", "jumps over the lazy dog", "Invoice 12345 paid", "Transport Document 0042", "Hello World abc def ghi", "QUICK BROWN FOX 987"};
+
+		BufferedImage[] images = {ScanAllocationBenchmark.createPage(fonts, lines), createNoisePage(1), createNoisePage(2)};
+
+		int failures = 0;
+
+		for (int imageIndex = 0; imageIndex < images.length; imageIndex++)
+		{
+			for (boolean componentLabeling : new boolean[]{false, true})
+			{
+				Page page = new Page(new Bitmap(images[imageIndex]));
+				Settings settings = new Settings();
+				settings.setComponentLabeling(componentLabeling);
+				settings.setMaxCharacterSpacingFraction(0.5, page);
+
+				ArrayList<TextBox> sequential = null;
+				long sequentialBest = Long.MAX_VALUE;
+
+				for (int round = 0; round < rounds; round++)
+				{
+					long t0 = System.nanoTime();
+					sequential = new PageSegmenter().scanPage(0, 0, 1, 1, page, settings);
+					long t1 = System.nanoTime();
+
+					sequentialBest = Math.min(sequentialBest, t1 - t0);
+				}
+
+				String expected = describe(sequential);
+				int characters = 0;
+				for (TextBox box : sequential)
+				{
+					characters += box.getChildren().size();
+				}
+
+				StringBuilder report = new StringBuilder(String.format("page %d, labeling %-5s, %3d words %4d characters: sequential %6.1f ms", imageIndex, componentLabeling, sequential.size(), characters, sequentialBest / 1e6));
+
+				for (int threads = 2; threads <= 8; threads *= 2)
+				{
+					ForkJoinPool pool = new ForkJoinPool(threads);
+					long best = Long.MAX_VALUE;
+					boolean same = true;
+
+					for (int round = 0; round < rounds; round++)
+					{
+						long t2 = System.nanoTime();
+						ArrayList<TextBox> textBoxes = new PageSegmenter().scanPage(0, 0, 1, 1, page, settings, pool);
+						long t3 = System.nanoTime();
+
+						best = Math.min(best, t3 - t2);
+						same &= expected.equals(describe(textBoxes));
+					}
+
+					pool.shutdown();
+
+					failures += same ? 0 : 1;
+					report.append(String.format(", %d threads %6.1f ms%s", threads, best / 1e6, same ? "" : " MISMATCH"));
+				}
+
+				System.out.println(report);
+			}
+		}
+
+		System.out.println("mismatches " + failures);
+	}
+
+
+	/**
+	 * Creates a page of random marks of character size in lines, with some marks touching.
+	 */
+	private static BufferedImage createNoisePage(long aSeed)
+	{
+		BufferedImage page = new BufferedImage(2000, 1400, BufferedImage.TYPE_BYTE_GRAY);
+
+		Graphics2D g = page.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, page.getWidth(), page.getHeight());
+		g.setColor(Color.BLACK);
+
+		Random rnd = new Random(aSeed);
+		for (int y = 60; y < 1300; y += 50 + rnd.nextInt(30))
+		{
+			for (int x = 40; x < 1900; x += 10 + rnd.nextInt(40))
+			{
+				g.fillRect(x, y + rnd.nextInt(6), 3 + rnd.nextInt(14), 10 + rnd.nextInt(20));
+			}
+		}
+
+		g.dispose();
+
+		return page;
+	}
+
+
+	private static String describe(ArrayList<TextBox> aTextBoxes)
+	{
+		StringBuilder text = new StringBuilder();
+		for (TextBox box : aTextBoxes)
+		{
+			describe(box, text);
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+
+	private static void describe(TextBox aTextBox, StringBuilder aText)
+	{
+		aText.append(aTextBox.x).append(',').append(aTextBox.y).append(',').append(aTextBox.width).append(',').append(aTextBox.height);
+
+		if (!aTextBox.getChildren().isEmpty())
+		{
+			aText.append('[');
+			for (TextBox child : aTextBox.getChildren())
+			{
+				describe(child, aText);
+				aText.append(';');
+			}
+			aText.append(']');
+		}
+	}
+}
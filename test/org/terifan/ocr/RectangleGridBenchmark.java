@@ -0,0 +1,101 @@
+package org.terifan.ocr;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Random;
+
+
+/**
+ * Compares RectangleGrid.findFirstIntersecting with a linear scan of the rectangles, which word grouping used before,
+ * on random layouts of character sized rectangles including empty ones. Rectangles are removed as they are found,
+ * like characters added to a word, and every query must return the same index as the linear scan.
+ */
+public class RectangleGridBenchmark
+{
+	public static void main(String... args)
+	{
+		int rounds = 10;
+		int mismatches = 0;
+
+		for (int round = 0; round < rounds; round++)
+		{
+			Random rnd = new Random(round);
+			int count = 500 + rnd.nextInt(4000);
+			int cellSize = 10 + rnd.nextInt(60);
+
+			ArrayList<Rectangle> rectangles = new ArrayList<>();
+			for (int i = 0; i < count; i++)
+			{
+				rectangles.add(new Rectangle(rnd.nextInt(2500) - 100, rnd.nextInt(3500) - 100, rnd.nextInt(8) == 0 ? 0 : 1 + rnd.nextInt(40), 1 + rnd.nextInt(50)));
+			}
+
+			Rectangle[] areas = new Rectangle[4 * count];
+			for (int i = 0; i < areas.length; i++)
+			{
+				areas[i] = new Rectangle(rnd.nextInt(2700) - 200, rnd.nextInt(3700) - 200, rnd.nextInt(20) == 0 ? 0 : 1 + rnd.nextInt(120), 1 + rnd.nextInt(80));
+			}
+
+			long t0 = System.nanoTime();
+			int[] expected = findLinear(rectangles, areas);
+			long t1 = System.nanoTime();
+			int[] actual = findGrid(rectangles, areas, cellSize);
+			long t2 = System.nanoTime();
+
+			int found = 0;
+			int errors = 0;
+			for (int i = 0; i < areas.length; i++)
+			{
+				found += expected[i] >= 0 ? 1 : 0;
+				errors += expected[i] != actual[i] ? 1 : 0;
+			}
+			mismatches += errors;
+
+			System.out.printf("%4d rectangles, cell size %2d, %5d queries %4d found: linear %7.2f ms, grid %6.2f ms, mismatches %d%n", count, cellSize, areas.length, found, (t1 - t0) / 1e6, (t2 - t1) / 1e6, errors);
+		}
+
+		System.out.println("mismatches " + mismatches);
+	}
+
+
+	private static int[] findLinear(ArrayList<Rectangle> aRectangles, Rectangle[] aAreas)
+	{
+		boolean[] removed = new boolean[aRectangles.size()];
+		int[] result = new int[aAreas.length];
+
+		for (int i = 0; i < aAreas.length; i++)
+		{
+			result[i] = -1;
+
+			for (int j = 0; j < aRectangles.size(); j++)
+			{
+				if (!removed[j] && aAreas[i].intersects(aRectangles.get(j)))
+				{
+					result[i] = j;
+					removed[j] = true;
+					break;
+				}
+			}
+		}
+
+		return result;
+	}
+
+
+	private static int[] findGrid(ArrayList<Rectangle> aRectangles, Rectangle[] aAreas, int aCellSize)
+	{
+		RectangleGrid grid = new RectangleGrid(aRectangles, aCellSize);
+		int[] result = new int[aAreas.length];
+
+		for (int i = 0; i < aAreas.length; i++)
+		{
+			result[i] = grid.findFirstIntersecting(aAreas[i]);
+
+			if (result[i] >= 0)
+			{
+				grid.remove(result[i]);
+			}
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,172 @@
+package org.terifan.ocr;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import javax.imageio.ImageIO;
+
+
+/**
+ * Measures the time and heap allocation per glyph of OCRSession.scan on the calling thread. A page of text is composed
+ * from the cells of the alphabet sheets, segmented once and scanned repeatedly. The first scan includes the result
+ * lists of the TextBoxes and the cache entries, later scans are measured with the glyph cache, without it and with a
+ * resolver computing the admission of every glyph.
+ */
+public class ScanAllocationBenchmark
+{
+	public static void main(String... args) throws Exception
+	{
+		int rounds = 10;
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		OCREngine engine = new OCREngine(OCREngine.DEFAULT_MATRIX_SIZE);
+		BufferedImage[] fonts = new BufferedImage[2];
+
+		for (int i = 0; i < fonts.length; i++)
+		{
+			String font = i == 0 ? "arial" : "courier";
+			fonts[i] = ImageIO.read(OCREngine.class.getResource("fonts/" + font + ".png"));
+			engine.learnAlphabet(font, new Bitmap(fonts[i]));
+		}
+
+		String[] lines = {"The quick brown fox", "jumps over the lazy dog", "Invoice 12345 paid", "Transport Document 0042"};
+
+		Page page = new Page(new Bitmap(createPage(fonts, lines)));
+		Settings settings = new Settings();
+		settings.setMaxCharacterSpacingFraction(0.5, page);
+
+		OCRSession session = new OCRSession(engine.getModel());
+		session.setGlyphCache(new GlyphCache());
+		session.loadPage(page, settings);
+
+		Resolver resolver = new SimpleLetterResolver();
+		Resolver uncached = new SimpleLetterResolver()
+		{
+			@Override
+			protected boolean isAdmissionCacheable()
+			{
+				return false;
+			}
+		};
+
+		long a0 = threads.getThreadAllocatedBytes(threadId);
+		session.scan(0, 0, 1, 1, resolver);
+		long a1 = threads.getThreadAllocatedBytes(threadId);
+
+		String text = toString(session.getScanResult());
+		int glyphs = countGlyphs(session.getScanResult());
+
+		System.out.printf("%d glyphs: %s%n", glyphs, text);
+		System.out.printf("first scan %d bytes per glyph%n", (a1 - a0) / glyphs);
+
+		for (int round = 0; round < rounds; round++)
+		{
+			long[] bytes = new long[3];
+			long[] times = new long[3];
+			boolean same = true;
+
+			for (int mode = 0; mode < 3; mode++)
+			{
+				session.setGlyphCache(mode == 1 ? null : session.getModel().getGlyphCache());
+
+				long t0 = System.nanoTime();
+				a0 = threads.getThreadAllocatedBytes(threadId);
+				session.scan(0, 0, 1, 1, mode == 2 ? uncached : resolver);
+				a1 = threads.getThreadAllocatedBytes(threadId);
+				long t1 = System.nanoTime();
+
+				bytes[mode] = (a1 - a0) / glyphs;
+				times[mode] = (t1 - t0) / glyphs;
+				same &= text.equals(toString(session.getScanResult()));
+			}
+
+			System.out.printf("cached %5d ns %4d bytes, uncached %5d ns %4d bytes, admission per glyph %5d ns %4d bytes per glyph%s%n", times[0], bytes[0], times[1], bytes[1], times[2], bytes[2], same ? "" : " MISMATCH");
+		}
+	}
+
+
+	static BufferedImage createPage(BufferedImage[] aFonts, String[] aLines)
+	{
+		String alphabet = CurvatureClassifier.DEFAULT_ALPHABET;
+		BufferedImage page = new BufferedImage(2000, 120 * aLines.length * aFonts.length + 80, BufferedImage.TYPE_BYTE_GRAY);
+
+		Graphics2D g = page.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, page.getWidth(), page.getHeight());
+
+		int y = 40;
+		for (BufferedImage font : aFonts)
+		{
+			for (String line : aLines)
+			{
+				int x = 40;
+				for (char c : line.toCharArray())
+				{
+					int i = alphabet.indexOf(c);
+					if (i == -1)
+					{
+						x += 40;
+						continue;
+					}
+					BufferedImage cell = font.getSubimage(71 * (i % 13) + 1, 69 * (i / 13) + 1, 69, 67);
+					int left = 0;
+					int right = cell.getWidth() - 1;
+					while (left < right && isEmptyColumn(cell, left))
+					{
+						left++;
+					}
+					while (right > left && isEmptyColumn(cell, right))
+					{
+						right--;
+					}
+					g.drawImage(cell, x, y, x + right - left + 1, y + cell.getHeight(), left, 0, right + 1, cell.getHeight(), null);
+					x += right - left + 7;
+				}
+				y += 120;
+			}
+		}
+
+		g.dispose();
+
+		return page;
+	}
+
+
+	private static boolean isEmptyColumn(BufferedImage aImage, int aX)
+	{
+		for (int y = 0; y < aImage.getHeight(); y++)
+		{
+			if ((aImage.getRGB(aX, y) & 0xff) < 128)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	private static int countGlyphs(ArrayList<TextBox> aTextBoxes)
+	{
+		int count = 0;
+		for (TextBox box : aTextBoxes)
+		{
+			count += box.getResults().size();
+		}
+		return count;
+	}
+
+
+	private static String toString(ArrayList<TextBox> aTextBoxes)
+	{
+		StringBuilder text = new StringBuilder();
+		for (TextBox box : aTextBoxes)
+		{
+			text.append(box).append(' ');
+		}
+		return text.toString().trim();
+	}
+}
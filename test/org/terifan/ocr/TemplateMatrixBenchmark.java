@@ -0,0 +1,127 @@
+package org.terifan.ocr;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.BitSet;
+import javax.imageio.ImageIO;
+
+
+/**
+ * Compares the time to find the closest template using the nested curvature vectors of each Symbol with the time
+ * using the TemplateMatrix, with and without abandoning templates early. The bundled fonts are learned repeatedly to simulate a large number of loaded fonts.
+ */
+public class TemplateMatrixBenchmark
+{
+	public static void main(String... args) throws Exception
+	{
+		int fontCopies = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		int rounds = 20;
+
+		CurvatureClassifier classifier = new CurvatureClassifier(OCREngine.DEFAULT_MATRIX_SIZE);
+
+		for (String font : new String[]{"arial", "courier"})
+		{
+			BufferedImage image = ImageIO.read(OCREngine.class.getResource("fonts/" + font + ".png"));
+
+			for (int i = 0; i < fontCopies; i++)
+			{
+				classifier.learn(font + i, new Bitmap(image), null);
+			}
+		}
+
+		ArrayList<Symbol> templates = classifier.getSymbols();
+		TemplateMatrix matrix = new TemplateMatrix(templates);
+		ArrayList<Symbol> queries = new ArrayList<>(templates.subList(0, templates.size() / fontCopies));
+		int[] features = new int[TemplateMatrix.FEATURES];
+		BitSet admission = new BitSet();
+		admission.set(0, templates.size());
+		int[] indices = new int[1];
+		int[] scores = new int[1];
+
+		System.out.printf("%d fonts, %d templates, %d queries%n", 2 * fontCopies, templates.size(), queries.size());
+
+		for (int round = 0; round < rounds; round++)
+		{
+			long checksum = 0;
+			long t0 = System.nanoTime();
+
+			for (Symbol query : queries)
+			{
+				checksum += nested(query, templates);
+			}
+
+			long t1 = System.nanoTime();
+
+			for (Symbol query : queries)
+			{
+				TemplateMatrix.getFeatures(query, features, 0);
+				checksum -= 2 * flat(features, matrix);
+			}
+
+			long t2 = System.nanoTime();
+
+			int previous = -1;
+			for (Symbol query : queries)
+			{
+				TemplateMatrix.getFeatures(query, features, 0);
+				matrix.findNearest(features, admission, previous, 1, indices, scores);
+				checksum += indices[0];
+				previous = indices[0];
+			}
+
+			long t3 = System.nanoTime();
+
+			System.out.printf("nested %6d us, matrix %6d us, early abandon %6d us, speedup %5.1fx / %5.1fx%s%n", (t1 - t0) / 1000, (t2 - t1) / 1000, (t3 - t2) / 1000, (t1 - t0) / (double)(t2 - t1), (t1 - t0) / (double)(t3 - t2), checksum == 0 ? "" : " MISMATCH");
+		}
+	}
+
+
+	private static int nested(Symbol aSymbol, ArrayList<Symbol> aTemplates)
+	{
+		int[] points = new int[aTemplates.size()];
+
+		for (int orientation = 0; orientation < 8; orientation++)
+		{
+			for (int zone = 0; zone < 3; zone++)
+			{
+				for (int type = 0; type < 2; type++)
+				{
+					for (int sym = 0; sym < aTemplates.size(); sym++)
+					{
+						points[sym] += Math.abs(aTemplates.get(sym).mCurvatureVector[orientation][type][zone] - aSymbol.mCurvatureVector[orientation][type][zone]);
+					}
+				}
+			}
+		}
+
+		int best = 0;
+		for (int sym = 1; sym < points.length; sym++)
+		{
+			if (points[sym] < points[best])
+			{
+				best = sym;
+			}
+		}
+
+		return best;
+	}
+
+
+	private static int flat(int[] aFeatures, TemplateMatrix aMatrix)
+	{
+		int best = 0;
+		int smallest = Integer.MAX_VALUE;
+
+		for (int sym = 0; sym < aMatrix.size(); sym++)
+		{
+			int points = aMatrix.distance(sym, aFeatures);
+			if (points < smallest)
+			{
+				smallest = points;
+				best = sym;
+			}
+		}
+
+		return best;
+	}
+}